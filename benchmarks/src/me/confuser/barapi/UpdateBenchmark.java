@@ -0,0 +1,121 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import me.confuser.barapi.harness.StandIns;
+import me.lucko.helper.bossbar.BossBar;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full update round, from changing the bars of all viewers to the packets sent by the next flush.
+ * <p>
+ * Every invocation changes the progress, so each round sends a metadata update to every viewer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+
+    @Param({"v1_6_R3", "v1_7_R4", "v1_8_R3", "spigot"})
+    public String version;
+
+    @Param({"1", "100"})
+    public int viewers;
+
+    private BarManager bars;
+    private BossBar bossBar;
+    private final List<Player> players = new ArrayList<>();
+    private int round = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandIns.install(this.version);
+
+        this.bars = new BarManager(StandIns.plugin(), new MemoryConfiguration(), new BarMetrics());
+        this.bossBar = this.bars.newBossBar(false, 0).title("Benchmark");
+
+        for (int i = 0; i < this.viewers; i++) {
+            Player player = StandIns.newPlayer("player" + i, i * 16, 64, 0);
+            // only counted, so the log doesn't grow over the whole run
+            StandIns.packets(player).setRecording(false);
+            this.players.add(player);
+            this.bossBar.addPlayer(player);
+        }
+
+        // spawn the dragons, so the benchmarks only measure updates
+        this.bars.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.bars.clear();
+        StandIns.removePlayers();
+    }
+
+    private float nextPercent() {
+        // large enough steps to never be rounded onto the previous value
+        return 10F + (this.round++ & 63);
+    }
+
+    @Benchmark
+    public void setMessage() {
+        String name = BarManager.cleanMessage("Benchmark");
+        float percent = nextPercent();
+
+        for (Player player : this.players) {
+            this.bars.setBar(player, BarManager.DEFAULT_OWNER, 1, name, percent, -1, false);
+        }
+
+        this.bars.flush();
+    }
+
+    @Benchmark
+    public void bossBarProgress() {
+        this.bossBar.progress(nextPercent() / 100d);
+        this.bars.flush();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi.nms;
+
+import me.confuser.barapi.Util;
+import me.confuser.barapi.harness.StandIns;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building each packet of every {@link FakeDragon} implementation.
+ * <p>
+ * The packet classes are bound once per JVM, so every version has to run in its own fork.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FakeDragonBenchmark {
+
+    @Param({"v1_6_R3", "v1_7_R4", "v1_8_R3", "spigot"})
+    public String version;
+
+    private FakeDragon dragon;
+    private Object watcher;
+
+    @Setup
+    public void setup() {
+        StandIns.install(this.version);
+
+        this.dragon = Util.newDragon("Benchmark", new Location(StandIns.world(), 100, 64, -100, 90, 0));
+        this.watcher = this.dragon.getWatcher();
+    }
+
+    @Benchmark
+    public Object spawnPacket() {
+        return this.dragon.getSpawnPacket();
+    }
+
+    @Benchmark
+    public Object destroyPacket() {
+        return this.dragon.getDestroyPacket();
+    }
+
+    @Benchmark
+    public Object watcher() {
+        return this.dragon.getWatcher();
+    }
+
+    @Benchmark
+    public Object updateWatcher() {
+        return this.dragon.getUpdateWatcher(true, true);
+    }
+
+    @Benchmark
+    public Object metaPacket() {
+        return this.dragon.getMetaPacket(this.watcher);
+    }
+
+    @Benchmark
+    public Object teleportPacket() {
+        return this.dragon.getTeleportPacket();
+    }
+}
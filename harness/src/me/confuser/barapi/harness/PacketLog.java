@@ -0,0 +1,110 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi.harness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The packets sent to one stand-in player, in the order they were sent.
+ */
+public final class PacketLog {
+
+    /**
+     * The packets BarAPI sends, by their class names in each supported version.
+     */
+    public enum Kind {
+        SPAWN("Packet24MobSpawn", "PacketPlayOutSpawnEntityLiving"),
+        DESTROY("Packet29DestroyEntity", "PacketPlayOutEntityDestroy"),
+        META("Packet40EntityMetadata", "PacketPlayOutEntityMetadata"),
+        TELEPORT("Packet34EntityTeleport", "PacketPlayOutEntityTeleport");
+
+        private final List<String> names;
+
+        Kind(String... names) {
+            this.names = Arrays.asList(names);
+        }
+
+        public boolean matches(Object packet) {
+            return this.names.contains(packet.getClass().getSimpleName());
+        }
+    }
+
+    private final List<Object> packets = new ArrayList<>();
+    private int count = 0;
+    private boolean recording = true;
+
+    public synchronized void record(Object packet) {
+        this.count++;
+
+        if (this.recording) {
+            this.packets.add(packet);
+        }
+    }
+
+    /**
+     * Sets whether packets are kept, or only counted, e.g. for long running benchmarks.
+     */
+    public synchronized void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Gets the number of packets sent, including those which were not kept.
+     */
+    public synchronized int size() {
+        return this.count;
+    }
+
+    /**
+     * Gets the number of kept packets of the given kind.
+     */
+    public synchronized int count(Kind kind) {
+        int count = 0;
+
+        for (Object packet : this.packets) {
+            if (kind.matches(packet)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    public synchronized List<Object> packets() {
+        return new ArrayList<>(this.packets);
+    }
+
+    public synchronized Object last() {
+        return this.packets.isEmpty() ? null : this.packets.get(this.packets.size() - 1);
+    }
+
+    public synchronized void clear() {
+        this.packets.clear();
+        this.count = 0;
+    }
+}
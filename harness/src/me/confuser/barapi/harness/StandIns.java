@@ -0,0 +1,300 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi.harness;
+
+import me.confuser.barapi.Util;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A Bukkit server, world and players which only implement what BarAPI uses, so BarAPI can run without a server.
+ * <p>
+ * Packets sent to the players end up in the stand-in NMS classes of the version selected with
+ * {@link #install(String)}, where they are recorded in the {@link PacketLog} of the player's PlayerConnection.
+ * Supported are v1_6_R3, v1_7_R4 and v1_8_R3, and v1_7_R4 with the spigot protocol hack for 1.8 clients.
+ */
+public final class StandIns {
+
+    private static final Map<UUID, Player> players = new ConcurrentHashMap<>();
+    private static final Map<UUID, Location> locations = new ConcurrentHashMap<>();
+    private static Server server;
+    private static World world;
+    private static Plugin plugin;
+    private static String nmsVersion;
+
+    private StandIns() {
+    }
+
+    /**
+     * Installs the stand-in server and selects the dragon implementation of the given version.
+     *
+     * @param version One of v1_6_R3, v1_7_R4, v1_8_R3 or spigot for 1.8 clients on v1_7_R4 with the protocol hack.
+     */
+    public static synchronized void install(String version) {
+        if (server == null) {
+            server = proxy(Server.class, StandIns::server);
+            world = proxy(World.class, StandIns::world);
+            plugin = proxy(Plugin.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getServer":
+                        return server;
+                    case "getLogger":
+                        return Logger.getLogger("BarAPI");
+                    default:
+                        return null;
+                }
+            });
+            Bukkit.setServer(server);
+        }
+
+        boolean spigotHack = version.equals("spigot");
+        nmsVersion = spigotHack ? "v1_7_R4" : version;
+        Util.detectVersion(nmsVersion, spigotHack);
+    }
+
+    public static Plugin plugin() {
+        return plugin;
+    }
+
+    public static World world() {
+        return world;
+    }
+
+    /**
+     * Creates an online player standing at the given position, looking straight ahead.
+     */
+    public static Player newPlayer(String name, double x, double y, double z) {
+        UUID uuid = UUID.nameUUIDFromBytes(name.getBytes());
+        Object handle = newEntityPlayer();
+        locations.put(uuid, new Location(world, x, y, z, 0, 0));
+
+        Player player = proxy(StandInPlayer.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getHandle":
+                    return handle;
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                    return name;
+                case "getWorld":
+                    return world;
+                case "getLocation":
+                    Location location = locations.get(uuid);
+
+                    if (args.length == 1 && args[0] != null) {
+                        Location target = (Location) args[0];
+                        target.setWorld(location.getWorld());
+                        target.setX(location.getX());
+                        target.setY(location.getY());
+                        target.setZ(location.getZ());
+                        target.setYaw(location.getYaw());
+                        target.setPitch(location.getPitch());
+                        return target;
+                    }
+                    return location.clone();
+                case "isOnline":
+                    return players.containsKey(uuid);
+                case "hashCode":
+                    return uuid.hashCode();
+                case "toString":
+                    return name;
+                case "equals":
+                    return args[0] == players.get(uuid);
+                default:
+                    return null;
+            }
+        });
+
+        players.put(uuid, player);
+        return player;
+    }
+
+    /**
+     * Gets the log of the packets sent to the given player.
+     */
+    public static PacketLog packets(Player player) {
+        try {
+            Object connection = Util.getConnection(player);
+            return (PacketLog) connection.getClass().getField("log").get(connection);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Moves the player, without telling BarAPI.
+     */
+    public static void move(Player player, double x, double y, double z, float yaw, float pitch) {
+        locations.put(player.getUniqueId(), new Location(world, x, y, z, yaw, pitch));
+    }
+
+    /**
+     * Takes the player offline, without telling BarAPI.
+     */
+    public static void quit(Player player) {
+        players.remove(player.getUniqueId());
+    }
+
+    public static void removePlayers() {
+        players.clear();
+        locations.clear();
+    }
+
+    private static Object newEntityPlayer() {
+        try {
+            return Class.forName("net.minecraft.server." + nmsVersion + ".EntityPlayer").getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object server(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getLogger":
+                return Logger.getLogger("StandIns");
+            case "getName":
+            case "getVersion":
+            case "getBukkitVersion":
+                return "StandIns";
+            case "isPrimaryThread":
+                return true;
+            case "getViewDistance":
+                return 10;
+            case "getPlayer":
+                return args[0] instanceof UUID ? players.get(args[0]) : null;
+            case "getOnlinePlayers":
+                return Collections.unmodifiableCollection(new ArrayList<>(players.values()));
+            case "getWorlds":
+                return Collections.singletonList(world);
+            default:
+                return null;
+        }
+    }
+
+    private static Object world(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getName":
+                return "world";
+            case "getBlockAt":
+                if (args.length == 1) {
+                    Location loc = (Location) args[0];
+                    return block(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+                }
+                return block((int) args[0], (int) args[1], (int) args[2]);
+            case "getMaxHeight":
+                return 256;
+            default:
+                return null;
+        }
+    }
+
+    private static Block block(int x, int y, int z) {
+        return proxy(Block.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getX":
+                    return x;
+                case "getY":
+                    return y;
+                case "getZ":
+                    return z;
+                case "getWorld":
+                    return world;
+                case "getLocation":
+                    return new Location(world, x, y, z);
+                case "getRelative":
+                    BlockFace face = (BlockFace) args[0];
+                    int distance = args.length > 1 ? (int) args[1] : 1;
+                    return block(x + face.getModX() * distance, y + face.getModY() * distance, z + face.getModZ() * distance);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * A player with the getHandle method of CraftPlayer, which is where BarAPI finds the player's connection.
+     */
+    public interface StandInPlayer extends Player {
+        Object getHandle();
+    }
+
+    @FunctionalInterface
+    private interface Handler extends InvocationHandler {
+        Object invoke(Method method, Object[] args);
+
+        @Override
+        default Object invoke(Object proxy, Method method, Object[] args) {
+            Object result = invoke(method, args == null ? new Object[0] : args);
+
+            if (result == null && method.getReturnType().isPrimitive()) {
+                return defaultValue(method.getReturnType());
+            }
+
+            return result;
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == void.class)
+            return null;
+        if (type == char.class)
+            return '\0';
+        if (type == float.class)
+            return 0F;
+        if (type == double.class)
+            return 0D;
+        if (type == long.class)
+            return 0L;
+        if (type == int.class)
+            return 0;
+        if (type == short.class)
+            return (short) 0;
+        return (byte) 0;
+    }
+}
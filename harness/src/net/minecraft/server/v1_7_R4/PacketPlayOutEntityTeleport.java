@@ -0,0 +1,51 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package net.minecraft.server.v1_7_R4;
+
+/**
+ * Stand-in for the 1.7 entity teleport packet, including the constructor added by the spigot protocol hack.
+ */
+public class PacketPlayOutEntityTeleport extends Packet {
+    private final int a;
+    private final int b;
+    private final int c;
+    private final int d;
+    private final byte e;
+    private final byte f;
+
+    public PacketPlayOutEntityTeleport(int id, int x, int y, int z, byte yaw, byte pitch) {
+        this.a = id;
+        this.b = x;
+        this.c = y;
+        this.d = z;
+        this.e = yaw;
+        this.f = pitch;
+    }
+
+    public PacketPlayOutEntityTeleport(int id, int x, int y, int z, byte yaw, byte pitch, boolean onGround, boolean heightCorrection) {
+        this(id, x, y, z, yaw, pitch);
+    }
+}
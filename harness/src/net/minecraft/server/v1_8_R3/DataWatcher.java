@@ -0,0 +1,59 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package net.minecraft.server.v1_8_R3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for the 1.8 entity data watcher.
+ */
+public class DataWatcher {
+    private final List<Object> values = new ArrayList<>();
+
+    public DataWatcher(Entity entity) {
+    }
+
+    public void a(int index, Object value) {
+        this.values.add(index);
+        this.values.add(value);
+    }
+
+    /**
+     * Gets the value last set at the given index, or null if it was not set.
+     */
+    public Object get(int index) {
+        Object value = null;
+
+        for (int i = 0; i < this.values.size(); i += 2) {
+            if ((int) this.values.get(i) == index) {
+                value = this.values.get(i + 1);
+            }
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import me.confuser.barapi.harness.Allocations;
+import me.confuser.barapi.harness.MetadataPacket;
+import me.confuser.barapi.harness.PacketLog;
+import me.confuser.barapi.harness.StandIns;
+import org.bukkit.Location;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.entity.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the packets each supported version sends for a bar, against the stand-in NMS classes.
+ */
+@RunWith(Parameterized.class)
+public class BarManagerTest {
+
+    // the metadata index of the dragon's health, the name moved between versions
+    private static final int HEALTH = 6;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> versions() {
+        return Arrays.asList(new Object[][]{
+                {"v1_6_R3", 10},
+                {"v1_7_R4", 10},
+                {"v1_8_R3", 2},
+                {"spigot", 10}
+        });
+    }
+
+    private final String version;
+    private final int nameIndex;
+    private BarManager bars;
+    private Player player;
+    private PacketLog log;
+
+    public BarManagerTest(String version, int nameIndex) {
+        this.version = version;
+        this.nameIndex = nameIndex;
+    }
+
+    @Before
+    public void setUp() {
+        StandIns.install(this.version);
+        this.bars = new BarManager(StandIns.plugin(), new MemoryConfiguration(), new BarMetrics());
+        this.player = StandIns.newPlayer("Notch", 0, 64, 0);
+        this.log = StandIns.packets(this.player);
+    }
+
+    @After
+    public void tearDown() {
+        this.bars.clear();
+        StandIns.removePlayers();
+    }
+
+    private void setMessage(String message, float percent) {
+        this.bars.setBar(this.player, BarManager.DEFAULT_OWNER, 0, message, percent, -1, false);
+    }
+
+    private void ticks(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            this.bars.tick();
+        }
+    }
+
+    private static MetadataPacket lastMeta(PacketLog log) {
+        List<Object> packets = log.packets();
+
+        for (int i = packets.size() - 1; i >= 0; i--) {
+            if (PacketLog.Kind.META.matches(packets.get(i)))
+                return (MetadataPacket) packets.get(i);
+        }
+
+        return null;
+    }
+
+    @Test
+    public void setMessageSpawnsDragon() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+
+        assertEquals(1, this.log.count(PacketLog.Kind.SPAWN));
+        assertEquals(1, this.log.count(PacketLog.Kind.META));
+        assertEquals(1, this.log.count(PacketLog.Kind.TELEPORT));
+        assertEquals(3, this.log.size());
+        assertTrue(this.bars.hasBar(this.player));
+    }
+
+    @Test
+    public void spawnCarriesNameAndHealth() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+
+        MetadataPacket meta = (MetadataPacket) this.log.packets().get(1);
+        assertEquals("Hello", meta.getMetadata(this.nameIndex));
+        assertEquals(200F, meta.getMetadata(HEALTH));
+    }
+
+    @Test
+    public void changesWithinFlushAreCombined() {
+        setMessage("One", 100F);
+        setMessage("Two", 100F);
+        setMessage("Three", 100F);
+        this.bars.flush();
+
+        assertEquals(3, this.log.size());
+        assertEquals("Three", ((MetadataPacket) this.log.packets().get(1)).getMetadata(this.nameIndex));
+    }
+
+    @Test
+    public void updateSendsOneMetaPacket() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        setMessage("World", 100F);
+        this.bars.flush();
+
+        assertEquals(1, this.log.size());
+        assertEquals(1, this.log.count(PacketLog.Kind.META));
+
+        MetadataPacket meta = (MetadataPacket) this.log.last();
+        assertEquals("World", meta.getMetadata(this.nameIndex));
+        // the health did not change, so it is left out
+        assertNull(meta.getMetadata(HEALTH));
+    }
+
+    @Test
+    public void unchangedBarSendsNothing() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        setMessage("Hello", 100F);
+        this.bars.flush();
+
+        assertEquals(0, this.log.size());
+    }
+
+    @Test
+    public void offlinePlayerGetsNoBar() {
+        StandIns.quit(this.player);
+        setMessage("Hello", 100F);
+        this.bars.flush();
+
+        assertFalse(this.bars.hasBar(this.player));
+        assertEquals(0, this.log.size());
+    }
+
+    @Test
+    public void barOfPlayerWhoLeftIsForgotten() {
+        setMessage("Hello", 100F);
+        StandIns.quit(this.player);
+        this.bars.flush();
+
+        assertFalse(this.bars.hasBar(this.player));
+        assertEquals(0, this.log.size());
+    }
+
+    @Test
+    public void dragonFollowsMovingPlayer() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        StandIns.move(this.player, 100, 64, 0, 90, 0);
+        this.bars.tick();
+
+        // dragons below the ground are seen from anywhere, the others have to stay in front of the player
+        assertEquals(Util.isBelowGround ? 0 : 1, this.log.count(PacketLog.Kind.TELEPORT));
+    }
+
+    @Test
+    public void highestPriorityIsShown() {
+        this.bars.setBar(this.player, "Low", 1, "Low", 100F, -1, false);
+        this.bars.setBar(this.player, "High", 5, "High", 100F, -1, false);
+        this.bars.flush();
+
+        assertEquals(1, this.log.count(PacketLog.Kind.SPAWN));
+        assertEquals("High", ((MetadataPacket) this.log.packets().get(1)).getMetadata(this.nameIndex));
+        this.log.clear();
+
+        this.bars.removeEntry(this.player, "High");
+        this.bars.flush();
+
+        // the same dragon switches to the next bar
+        assertEquals(1, this.log.size());
+        assertEquals("Low", lastMeta(this.log).getMetadata(this.nameIndex));
+    }
+
+    @Test
+    public void equalPriorityKeepsFirstBar() {
+        setMessage("First", 100F);
+        this.bars.setBar(this.player, "Plugin", 0, "Second", 100F, -1, false);
+        this.bars.flush();
+
+        assertEquals("First", ((MetadataPacket) this.log.packets().get(1)).getMetadata(this.nameIndex));
+        this.log.clear();
+
+        // only the bar without an owner is removed, so the owned one is shown instead
+        this.bars.removeEntry(this.player, BarManager.DEFAULT_OWNER);
+        this.bars.flush();
+
+        assertTrue(this.bars.hasBar(this.player));
+        assertEquals(0, this.log.count(PacketLog.Kind.DESTROY));
+        assertEquals("Second", lastMeta(this.log).getMetadata(this.nameIndex));
+    }
+
+    @Test
+    public void timedBarCountsDownAndDisappears() {
+        setMessage("Timer", 100F);
+        this.bars.scheduleTimer(this.player, 40, 40);
+        this.bars.flush();
+        this.log.clear();
+
+        ticks(20);
+        this.bars.flush();
+
+        MetadataPacket meta = lastMeta(this.log);
+        assertEquals(0, this.log.count(PacketLog.Kind.DESTROY));
+        assertEquals(100F, (float) meta.getMetadata(HEALTH), 1F);
+
+        ticks(20);
+        this.bars.flush();
+
+        assertEquals(1, this.log.count(PacketLog.Kind.DESTROY));
+        assertFalse(this.bars.hasBar(this.player));
+    }
+
+    @Test
+    public void teleportsInQuickSuccessionAreCombined() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        // within the tracker distance, so only the teleports move the dragon
+        this.bars.handleTeleport(this.player, new Location(StandIns.world(), 2, 64, 0), false);
+        this.bars.handleTeleport(this.player, new Location(StandIns.world(), 4, 64, 0), false);
+        this.bars.handleTeleport(this.player, new Location(StandIns.world(), 6, 64, 0), false);
+        StandIns.move(this.player, 6, 64, 0, 0, 0);
+        ticks(1);
+
+        assertEquals(0, this.log.size());
+
+        ticks(1);
+
+        assertEquals(1, this.log.size());
+        assertEquals(1, this.log.count(PacketLog.Kind.TELEPORT));
+    }
+
+    @Test
+    public void respawnRespawnsDragon() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        this.bars.handleTeleport(this.player, new Location(StandIns.world(), 0, 64, 0), true);
+        ticks(2);
+        this.bars.flush();
+
+        assertEquals(1, this.log.count(PacketLog.Kind.DESTROY));
+        assertEquals(1, this.log.count(PacketLog.Kind.SPAWN));
+        assertTrue(PacketLog.Kind.DESTROY.matches(this.log.packets().get(0)));
+    }
+
+    @Test
+    public void invisibleHealthChangeIsNotSent() {
+        setMessage("Hello", 50F);
+        this.bars.flush();
+        this.log.clear();
+
+        // less than a pixel of the bar
+        setMessage("Hello", 50.1F);
+        this.bars.flush();
+
+        assertEquals(0, this.log.size());
+    }
+
+    @Test
+    public void exactHealthIsSentAsIs() {
+        setMessage("Hello", 50F);
+        this.bars.flush();
+        this.log.clear();
+
+        this.bars.setBar(this.player, BarManager.DEFAULT_OWNER, 0, "Hello", 50.1F, -1, true);
+        this.bars.flush();
+
+        assertEquals(1, this.log.count(PacketLog.Kind.META));
+        assertEquals(50.1F / 100F * 200F, (float) lastMeta(this.log).getMetadata(HEALTH), 0F);
+    }
+
+    @Test
+    public void longTitleIsCut() {
+        setMessage(BarManager.cleanMessage(repeat('a', 70)), 100F);
+        this.bars.flush();
+
+        assertEquals(repeat('a', 64), ((MetadataPacket) this.log.packets().get(1)).getMetadata(this.nameIndex));
+    }
+
+    @Test
+    public void halfColourCodeIsTrimmed() {
+        setMessage(BarManager.cleanMessage(repeat('a', 63) + "\u00A7cred"), 100F);
+        this.bars.flush();
+
+        assertEquals(repeat('a', 63), ((MetadataPacket) this.log.packets().get(1)).getMetadata(this.nameIndex));
+    }
+
+    @Test
+    public void bulkBarsShareUpdates() {
+        Player other = StandIns.newPlayer("Dinnerbone", 0, 64, 0);
+        PacketLog otherLog = StandIns.packets(other);
+        List<Player> players = Arrays.asList(this.player, other);
+
+        this.bars.setBars(players, BarManager.DEFAULT_OWNER, 0, "Hello", 100F, false);
+        this.bars.flush();
+        this.log.clear();
+        otherLog.clear();
+
+        this.bars.setBars(players, BarManager.DEFAULT_OWNER, 0, "World", 100F, false);
+        this.bars.flush();
+
+        // both dragons have the same entity ID, so one packet serves both players
+        assertEquals(1, this.log.size());
+        assertSame(this.log.last(), otherLog.last());
+    }
+
+    @Test
+    public void separateBarsDontShareUpdates() {
+        Player other = StandIns.newPlayer("Dinnerbone", 0, 64, 0);
+        PacketLog otherLog = StandIns.packets(other);
+
+        setMessage("Hello", 100F);
+        this.bars.setBar(other, BarManager.DEFAULT_OWNER, 0, "Hello", 100F, -1, false);
+        this.bars.flush();
+        this.log.clear();
+        otherLog.clear();
+
+        setMessage("World", 100F);
+        this.bars.setBar(other, BarManager.DEFAULT_OWNER, 0, "World", 100F, -1, false);
+        this.bars.flush();
+
+        assertEquals(1, this.log.size());
+        assertNotSame(this.log.last(), otherLog.last());
+    }
+
+    @Test
+    public void progressIsWorkedOutPerPlayer() {
+        Player other = StandIns.newPlayer("Dinnerbone", 0, 64, 0);
+        PacketLog otherLog = StandIns.packets(other);
+        float[] progress = {100F, 0F};
+
+        this.bars.setBars(Arrays.asList(this.player, other), "Cooldown", 0, "Cooldown",
+                p -> progress[p == this.player ? 0 : 1]);
+        this.bars.flush();
+
+        assertEquals(200F, ((MetadataPacket) this.log.packets().get(1)).getMetadata(HEALTH));
+        assertEquals(0F, ((MetadataPacket) otherLog.packets().get(1)).getMetadata(HEALTH));
+        this.log.clear();
+        otherLog.clear();
+
+        progress[1] = 100F;
+        this.bars.flush();
+
+        // only the player whose progress changed is sent an update
+        assertEquals(0, this.log.size());
+        assertEquals(1, otherLog.size());
+        assertEquals(200F, lastMeta(otherLog).getMetadata(HEALTH));
+    }
+
+    @Test
+    public void failingProgressLeavesBar() {
+        boolean[] broken = {false};
+
+        this.bars.setBars(Arrays.asList(this.player), "Cooldown", 0, "Cooldown", p -> {
+            if (broken[0])
+                throw new IllegalStateException("Broken on purpose");
+            return 50F;
+        });
+        this.bars.flush();
+        this.log.clear();
+
+        broken[0] = true;
+        this.bars.flush();
+        this.bars.flush();
+
+        assertTrue(this.bars.hasBar(this.player));
+        assertEquals(0, this.log.size());
+    }
+
+    @Test
+    public void idleTickAllocatesLittle() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        long idle = Allocations.measure(this.bars::tick, 10000);
+
+        // nothing changed, so apart from the arguments of calls to the stand-in player nothing should be allocated
+
+        assertEquals(0, this.log.size());
+        assertTrue("an idle tick allocated " + idle + " bytes", idle < 64);
+    }
+
+    @Test
+    public void removeBarSendsOneDestroyPacket() {
+        setMessage("Hello", 100F);
+        this.bars.flush();
+        this.log.clear();
+
+        this.bars.removeEntry(this.player, BarManager.DEFAULT_OWNER);
+        this.bars.flush();
+
+        assertEquals(1, this.log.size());
+        assertEquals(1, this.log.count(PacketLog.Kind.DESTROY));
+        assertFalse(this.bars.hasBar(this.player));
+    }
+
+    private static String repeat(char c, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
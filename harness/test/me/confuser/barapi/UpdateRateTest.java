@@ -0,0 +1,151 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks how the update intervals follow the tick and flush times, both with the server's tick times and without.
+ */
+public class UpdateRateTest {
+
+    private static final long MILLIS = 1000000L;
+
+    private long now = 0;
+
+    /**
+     * Runs the given number of ticks, each taking the given time and flushing for the given time.
+     */
+    private void run(UpdateRate rate, int ticks, double tickMillis, double flushMillis) {
+        for (int i = 0; i < ticks; i++) {
+            this.now += (long) (tickMillis * MILLIS);
+            rate.tick(this.now);
+            rate.flushed((long) (flushMillis * MILLIS));
+        }
+    }
+
+    private static long[] tickTimes(double millis) {
+        long[] times = new long[100];
+        Arrays.fill(times, (long) (millis * MILLIS));
+        return times;
+    }
+
+    @Test
+    public void healthyServerKeepsFullRateWithoutTickTimes() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), null);
+        run(rate, 400, 50, 0.1);
+
+        assertEquals(1, rate.getUpdateInterval());
+        assertEquals(5, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void overrunningTicksSlowDownWithoutTickTimes() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), null);
+        run(rate, 200, 70, 0.1);
+
+        assertEquals(10, rate.getUpdateInterval());
+        assertEquals(20, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void recoversWithoutTickTimes() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), null);
+        run(rate, 200, 70, 0.1);
+        run(rate, 1000, 50, 0.1);
+
+        assertEquals(1, rate.getUpdateInterval());
+        assertEquals(5, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void healthyServerKeepsFullRateWithTickTimes() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), tickTimes(20));
+        run(rate, 400, 50, 0.1);
+
+        assertEquals(1, rate.getUpdateInterval());
+        assertEquals(20, rate.getTickTime(), 0.001);
+    }
+
+    @Test
+    public void busyTicksSlowDownWithTickTimes() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), tickTimes(48));
+        // ticks finish in time, so only the server's own tick times show how busy it is
+        run(rate, 200, 50, 0.1);
+
+        assertEquals(10, rate.getUpdateInterval());
+        assertEquals(20, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void recoversWithTickTimes() {
+        long[] times = tickTimes(48);
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), times);
+        run(rate, 200, 50, 0.1);
+
+        Arrays.fill(times, 20 * MILLIS);
+        run(rate, 1000, 50, 0.1);
+
+        assertEquals(1, rate.getUpdateInterval());
+        assertEquals(5, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void slowFlushesSlowDown() {
+        UpdateRate rate = new UpdateRate(new MemoryConfiguration(), tickTimes(20));
+        run(rate, 200, 50, 5);
+
+        assertEquals(10, rate.getUpdateInterval());
+    }
+
+    @Test
+    public void intervalsStopAtTheirMaximum() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("updateInterval", 2);
+        config.set("adaptiveRate.maxUpdateInterval", 4);
+        UpdateRate rate = new UpdateRate(config, tickTimes(48));
+        run(rate, 200, 50, 0.1);
+
+        assertEquals(4, rate.getUpdateInterval());
+        assertEquals(20, rate.getTrackerInterval());
+    }
+
+    @Test
+    public void disabledKeepsConfiguredRate() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("adaptiveRate.enabled", false);
+        UpdateRate rate = new UpdateRate(config, null);
+        run(rate, 200, 100, 5);
+
+        assertEquals(1, rate.getUpdateInterval());
+        assertEquals(5, rate.getTrackerInterval());
+    }
+}
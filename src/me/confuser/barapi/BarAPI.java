@@ -1,18 +1,12 @@
 package me.confuser.barapi;
 
-import me.confuser.barapi.nms.FakeDragon;
 import me.confuser.barapi.nms.v1_8Fake;
+import me.lucko.helper.Commands;
 import me.lucko.helper.bossbar.BossBar;
-import me.lucko.helper.bossbar.BossBarColor;
 import me.lucko.helper.bossbar.BossBarFactory;
-import me.lucko.helper.bossbar.BossBarStyle;
 import me.lucko.helper.plugin.ExtendedJavaPlugin;
 import me.lucko.helper.plugin.ap.Plugin;
-import me.lucko.helper.text.Text;
 import org.apache.commons.lang.Validate;
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -24,13 +18,14 @@ import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.plugin.ServicePriority;
 
 import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.UUID;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Allows plugins to safely set a health bar message.
@@ -41,33 +36,17 @@ import java.util.UUID;
 public class BarAPI extends ExtendedJavaPlugin implements Listener, BossBarFactory {
 
     private static boolean useSpigotHack = false;
-    private Map<UUID, FakeDragon> players = new HashMap<>();
-    private Map<UUID, Integer> timers = new HashMap<>();
+    private BarManager bars;
+    private final BarMetrics metrics = new BarMetrics();
+    private ObjectName metricsName;
+    private boolean channelWrites = false;
+    // whether PacketChannel caches player channels, for channel writes or backpressure
+    private boolean channelsBound = false;
 
     public static boolean useSpigotHack() {
         return useSpigotHack;
     }
 
-    private static String cleanMessage(String message) {
-        if (message.length() > 64)
-            message = message.substring(0, 63);
-
-        return message;
-    }
-
-    private static BlockFace getDirection(Location loc) {
-        float dir = Math.round(loc.getYaw() / 90);
-        if (dir == -4 || dir == 0 || dir == 4)
-            return BlockFace.SOUTH;
-        if (dir == -1 || dir == 3)
-            return BlockFace.EAST;
-        if (dir == -2 || dir == 2)
-            return BlockFace.NORTH;
-        if (dir == -3 || dir == 1)
-            return BlockFace.WEST;
-        return null;
-    }
-
     @Override
     public void enable() {
         getConfig().options().copyDefaults(true);
@@ -85,18 +64,38 @@ public class BarAPI extends ExtendedJavaPlugin implements Listener, BossBarFacto
 
         getServer().getPluginManager().registerEvents(this, this);
 
-        if (useSpigotHack) {
-            getServer().getScheduler().scheduleSyncRepeatingTask(this, () -> {
-                for (UUID uuid : this.players.keySet()) {
-                    Player p = Bukkit.getPlayer(uuid);
-                    Util.sendPacket(p, this.players.get(uuid).getTeleportPacket(getDragonLocation(p.getLocation())));
-                }
-            }, 0L, 5L);
+        if (getConfig().getBoolean("channelWrites", false)) {
+            this.channelWrites = hasNetty() && PacketChannel.bind(getLogger());
+            Util.setChannelWrites(this.channelWrites);
+            this.channelsBound = this.channelWrites;
+
+            if (!this.channelWrites) {
+                getLogger().info("Channel writes are not supported on this server, sending packets normally");
+            }
+        }
+
+        if (getConfig().getBoolean("backpressure", true)) {
+            boolean backpressure = hasNetty() && PacketChannel.bindChannels();
+            Util.setBackpressure(backpressure);
+            this.channelsBound |= backpressure;
+
+            if (!backpressure) {
+                getLogger().info("Backpressure is not supported on this server, updates are sent to slow clients regardless");
+            }
         }
 
+        this.bars = new BarManager(this, getConfig(), this.metrics);
+
+        // flushes and tracking are run from the tick, at intervals adapted to how the server is doing
+        getServer().getScheduler().scheduleSyncRepeatingTask(this, this.bars::tick, 1L, 1L);
+
+        registerMetrics();
+
         // provide helper boss bar service
         BossBarFactory service = getService(BossBarFactory.class);
-        provideService(BossBarFactory.class, new MixedBossBarFactory(this, service), ServicePriority.High);
+        MixedBossBarFactory factory = new MixedBossBarFactory(this, service);
+        getServer().getPluginManager().registerEvents(factory, this);
+        provideService(BossBarFactory.class, factory, ServicePriority.High);
     }
 
     @Override
@@ -105,13 +104,81 @@ public class BarAPI extends ExtendedJavaPlugin implements Listener, BossBarFacto
             quit(player);
         }
 
-        this.players.clear();
+        // send the destroy packets before forgetting about the dragons
+        this.bars.dispatch();
 
-        for (int timerID : this.timers.values()) {
-            Bukkit.getScheduler().cancelTask(timerID);
+        this.bars.clear();
+
+        if (this.metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.metricsName);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
         }
+    }
 
-        this.timers.clear();
+    BarMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Exposes the metrics as an MBean and through the /barapi command.
+     */
+    private void registerMetrics() {
+        try {
+            this.metricsName = new ObjectName("me.confuser.barapi:type=Metrics");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this.metrics, BarMetricsMBean.class), this.metricsName);
+        } catch (JMException e) {
+            this.metricsName = null;
+            e.printStackTrace();
+        }
+
+        Commands.create()
+                .assertPermission("barapi.metrics")
+                .handler(c -> {
+                    if ("reset".equalsIgnoreCase(c.rawArg(0))) {
+                        this.metrics.reset();
+                        c.reply("&e[BarAPI] &7Metrics reset");
+                        return;
+                    }
+
+                    BarMetrics m = this.metrics;
+                    double seconds = m.getSeconds();
+
+                    c.reply("&e[BarAPI] &7Metrics of the last &f" + String.format("%.0f", seconds) + "s&7, &f" + m.getActiveBars() + " &7active bars",
+                            String.format("&7Updating every &f%d &7ticks, ticks take &f%.1fms", m.getUpdateInterval(), m.getTickTime()),
+                            "&7Packets: " + formatPackets(m, BarMetrics.Packet.SPAWN, seconds) + ", "
+                                    + formatPackets(m, BarMetrics.Packet.META, seconds) + ", "
+                                    + formatPackets(m, BarMetrics.Packet.TELEPORT, seconds) + ", "
+                                    + formatPackets(m, BarMetrics.Packet.DESTROY, seconds),
+                            String.format("&7Flushes: &f%d&7, mean &f%.1fus&7, p99 &f%.1fus&7, max &f%.1fus",
+                                    m.getFlushes(), m.getFlushTimeMean(), m.getFlushTime99thPercentile(), m.getFlushTimeMax()),
+                            String.format("&7Building packets: mean &f%.2fus&7, p99 &f%.2fus",
+                                    m.getBuildTimeMean(), m.getBuildTime99thPercentile()),
+                            String.format("&7Mixed bars: &f%d &7legacy (&f%d &7updates), &f%d &71.9+ (&f%d &7updates)",
+                                    m.getLegacyBars(), m.getLegacyUpdates(), m.getModernBars(), m.getModernUpdates()),
+                            "&7Updates held back for slow clients: &f" + m.getDeferredUpdates());
+                })
+                .registerAndBind(this, "barapi");
+    }
+
+    /**
+     * Checks for the unshaded netty PacketChannel is written against, without loading any of its classes.
+     * Older servers only ship it shaded, or not at all.
+     */
+    private static boolean hasNetty() {
+        try {
+            Class.forName("io.netty.channel.Channel", false, BarAPI.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static String formatPackets(BarMetrics metrics, BarMetrics.Packet type, double seconds) {
+        long count = metrics.getPackets(type);
+        return String.format("%s &f%d &7(&f%.1f&7/s)", type.name().toLowerCase(), count, count / seconds);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -126,48 +193,31 @@ public class BarAPI extends ExtendedJavaPlugin implements Listener, BossBarFacto
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerTeleport(final PlayerTeleportEvent event) {
-        handleTeleport(event.getPlayer(), event.getTo().clone());
+        this.bars.handleTeleport(event.getPlayer(), event.getTo().clone(), event.getFrom().getWorld() != event.getTo().getWorld());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerTeleport(final PlayerRespawnEvent event) {
-        handleTeleport(event.getPlayer(), event.getRespawnLocation().clone());
-    }
-
-    private void handleTeleport(final Player player, final Location loc) {
-        if (!hasBar(player)) {
-            return;
-        }
-
-        final FakeDragon oldDragon = getDragon(player, "");
-
-        Bukkit.getScheduler().runTaskLater(this, () -> {
-            // Check if the player still has a dragon after the two ticks! ;)
-            if (!hasBar(player))
-                return;
-
-            float health = oldDragon.health;
-            String message = oldDragon.name;
-
-            Util.sendPacket(player, getDragon(player, "").getDestroyPacket());
-
-            this.players.remove(player.getUniqueId());
-
-            FakeDragon dragon = addDragon(player, loc, message);
-            dragon.health = health;
-
-            sendDragon(dragon, player);
-        }, 2L);
+        this.bars.handleTeleport(event.getPlayer(), event.getRespawnLocation().clone(), true);
     }
 
     private void quit(Player player) {
-        removeBar(player);
+        this.bars.destroyBar(player);
+
+        if (this.channelsBound) {
+            PacketChannel.invalidate(player);
+        }
     }
 
     /**
      * Set a message for the given player.<br>
-     * It will remain there until the player logs off or another plugin overrides it.<br>
-     * This method will show a health bar using the given percentage value and will cancel any running timers.
+     * It will remain there until the player logs off, the bar is removed or it is replaced by another call without an owner.<br>
+     * Bars set with an owner and a higher priority are shown over it,
+     * see {@link #setMessage(Player, Object, int, String, float)}.<br>
+     * This method will show a health bar using the given percentage value and will cancel any running timers.<br>
+     * If the player already has a bar, only the changed name and health are sent to the existing dragon.<br>
+     * Changes are sent with the next update, so several calls within one tick are combined.<br>
+     * This method may be called from any thread.
      *
      * @param player  The player who should see the given message.
      * @param message The message shown to the player.<br>
@@ -178,225 +228,234 @@ public class BarAPI extends ExtendedJavaPlugin implements Listener, BossBarFacto
      * @throws IllegalArgumentException If the percentage is not within valid bounds.
      */
     public void setMessage(Player player, String message, float percent) {
-        Validate.isTrue(0F <= percent && percent <= 100F, "Percent must be between 0F and 100F, but was: ", percent);
-
-        if (hasBar(player)) {
-            removeBar(player);
-        }
-
-        FakeDragon dragon = getDragon(player, message);
-
-        dragon.name = cleanMessage(message);
-        dragon.health = (percent / 100f) * dragon.getMaxHealth();
+        setMessage(player, message, percent, false);
+    }
 
-        cancelTimer(player);
+    /**
+     * Set a message for the given player, like {@link #setMessage(Player, String, float)}.<br>
+     * By default the health is rounded to what the client can draw, so changes too small to be visible are not sent.
+     * Callers that need the exact value to reach the client can disable this.
+     *
+     * @param player  The player who should see the given message.
+     * @param message The message shown to the player.
+     * @param percent The percentage of the health bar filled.<br>
+     *                This value must be between 0F (inclusive) and 100F (inclusive).
+     * @param exact   Whether the health should be sent as is, rather than rounded to the client's resolution.
+     * @throws IllegalArgumentException If the percentage is not within valid bounds.
+     */
+    public void setMessage(Player player, String message, float percent, boolean exact) {
+        Validate.isTrue(0F <= percent && percent <= 100F, "Percent must be between 0F and 100F, but was: ", percent);
 
-        sendDragon(dragon, player);
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> this.bars.setBar(player, BarManager.DEFAULT_OWNER, 0, name, percent, -1, exact));
     }
 
     /**
-     * Checks whether the given player has a bar.
+     * Set a message for each of the given players, like {@link #setMessage(Player, String, float)}.<br>
+     * The message is validated and cleaned once. Players who get a new dragon from this call share its entity ID,
+     * so later updates to them are built as one packet. Players who already had a dragon keep their own.<br>
+     * The players are copied, so the collection may be changed afterwards.<br>
+     * This method may be called from any thread.
      *
-     * @param player The player who should be checked.
-     * @return True, if the player has a bar, False otherwise.
+     * @param players The players who should see the given message.
+     * @param message The message shown to the players.<br>
+     *                Due to limitations in Minecraft this message cannot be longer than 64 characters.<br>
+     *                It will be cut to that size automatically.
+     * @param percent The percentage of the health bar filled.<br>
+     *                This value must be between 0F (inclusive) and 100F (inclusive).
+     * @throws IllegalArgumentException If the percentage is not within valid bounds.
      */
-    public boolean hasBar(Player player) {
-        return this.players.get(player.getUniqueId()) != null;
+    public void setMessage(Collection<? extends Player> players, String message, float percent) {
+        Validate.notNull(players, "Players cannot be null");
+        Validate.isTrue(0F <= percent && percent <= 100F, "Percent must be between 0F and 100F, but was: ", percent);
+
+        List<Player> copy = new ArrayList<>(players);
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> this.bars.setBars(copy, BarManager.DEFAULT_OWNER, 0, name, percent, false));
     }
 
     /**
-     * Removes the bar from the given player.<br>
-     * If the player has no bar, this method does nothing.
+     * Set a message for every online player, like {@link #setMessage(Collection, String, float)}.<br>
+     * The players are looked up when the message is applied, so this method may be called from any thread.
      *
-     * @param player The player whose bar should be removed.
+     * @param message The message shown to the players.<br>
+     *                Due to limitations in Minecraft this message cannot be longer than 64 characters.<br>
+     *                It will be cut to that size automatically.
+     * @param percent The percentage of the health bar filled.<br>
+     *                This value must be between 0F (inclusive) and 100F (inclusive).
+     * @throws IllegalArgumentException If the percentage is not within valid bounds.
      */
-    public void removeBar(Player player) {
-        if (!hasBar(player))
-            return;
+    public void setMessage(String message, float percent) {
+        Validate.isTrue(0F <= percent && percent <= 100F, "Percent must be between 0F and 100F, but was: ", percent);
 
-        FakeDragon dragon = getDragon(player, "");
-        Util.sendPacket(player, dragon.getDestroyPacket());
-        this.players.remove(player.getUniqueId());
-        cancelTimer(player);
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> this.bars.setBars(getServer().getOnlinePlayers(), BarManager.DEFAULT_OWNER, 0, name, percent, false));
     }
 
-    private void cancelTimer(Player player) {
-        Integer timerID = this.timers.remove(player.getUniqueId());
+    /**
+     * Set a message for the given player on behalf of the given owner.<br>
+     * Each owner has its own bar, and the player is only shown the bar with the highest priority.
+     * Of several bars with the same priority, the one set first is shown.<br>
+     * Switching between bars reuses the same dragon, so only the changed name and health are sent.<br>
+     * The bar remains until it is removed using {@link #removeBar(Player, Object)} or the player logs off.<br>
+     * This method may be called from any thread.
+     *
+     * @param player   The player who should see the given message.
+     * @param owner    The owner of the bar, e.g. the calling plugin.
+     * @param priority The priority of the bar. Higher priorities are shown over lower ones,
+     *                 bars set using {@link #setMessage(Player, String, float)} have a priority of 0.
+     * @param message  The message shown to the player.<br>
+     *                 Due to limitations in Minecraft this message cannot be longer than 64 characters.<br>
+     *                 It will be cut to that size automatically.
+     * @param percent  The percentage of the health bar filled.<br>
+     *                 This value must be between 0F (inclusive) and 100F (inclusive).
+     * @throws IllegalArgumentException If the percentage is not within valid bounds.
+     */
+    public void setMessage(Player player, Object owner, int priority, String message, float percent) {
+        Validate.notNull(owner, "Owner cannot be null");
+        Validate.isTrue(0F <= percent && percent <= 100F, "Percent must be between 0F and 100F, but was: ", percent);
 
-        if (timerID != null) {
-            Bukkit.getScheduler().cancelTask(timerID);
-        }
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> this.bars.setBar(player, owner, priority, name, percent, -1, false));
     }
 
-    private void sendDragon(FakeDragon dragon, Player player) {
-        Util.sendPacket(player, dragon.getMetaPacket(dragon.getWatcher()));
-        Util.sendPacket(player, dragon.getTeleportPacket(getDragonLocation(player.getLocation())));
+    /**
+     * Set a message for each of the given players on behalf of the given owner,
+     * with a percentage worked out separately for every player, e.g. for cooldowns.<br>
+     * The function is called with every update for each player shown this bar,
+     * and only players whose bar visibly changed are sent the new health.<br>
+     * For many players the function is called from several threads at once, so it must be thread safe
+     * and should not use the Bukkit API beyond reading from the player.<br>
+     * Values outside of 0 and 100 are clamped. If the function throws, the player's bar is left as it was.<br>
+     * The bar remains until it is removed using {@link #removeBar(Player, Object)} or the player logs off.<br>
+     * This method may be called from any thread.
+     *
+     * @param players  The players who should see the given message.
+     * @param owner    The owner of the bar, e.g. the calling plugin.
+     * @param priority The priority of the bar, see {@link #setMessage(Player, Object, int, String, float)}.
+     * @param message  The message shown to the players.<br>
+     *                 Due to limitations in Minecraft this message cannot be longer than 64 characters.<br>
+     *                 It will be cut to that size automatically.
+     * @param percent  The function giving the percentage of the health bar filled for a player,
+     *                 between 0 (inclusive) and 100 (inclusive).
+     */
+    public void setMessage(Collection<? extends Player> players, Object owner, int priority, String message, ToDoubleFunction<? super Player> percent) {
+        Validate.notNull(players, "Players cannot be null");
+        Validate.notNull(owner, "Owner cannot be null");
+        Validate.notNull(percent, "Percent cannot be null");
+
+        List<Player> copy = new ArrayList<>(players);
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> this.bars.setBars(copy, owner, priority, name, percent));
     }
 
-    private FakeDragon getDragon(Player player, String message) {
-        if (hasBar(player)) {
-            return this.players.get(player.getUniqueId());
-        } else
-            return addDragon(player, cleanMessage(message));
+    /**
+     * Set a timed message for the given player.<br>
+     * It will remain until the timer runs out. The health automatically reduces based on how long the timer is.<br>
+     * This method may be called from any thread.
+     *
+     * @param player  The player who should see the given timed message.
+     * @param message The message shown to the player.<br>
+     *                Due to limitations in Minecraft this message cannot be longer than 64 characters.<br>
+     *                It will be cut to that size automatically.
+     * @param seconds The amount of seconds displayed by the timer.<br>
+     *                Supports values above 1 (inclusive).
+     * @throws IllegalArgumentException If seconds is zero or below.
+     */
+    public void setMessage(Player player, String message, int seconds) {
+        Validate.isTrue(seconds > 0, "Seconds must be above 1 but was: ", seconds);
+
+        String name = BarManager.cleanMessage(message);
+        this.bars.sync(() -> {
+            this.bars.setBar(player, BarManager.DEFAULT_OWNER, 0, name, 100F, -1, false);
+
+            long duration = seconds * 20L;
+            this.bars.scheduleTimer(player, duration, duration);
+        });
     }
 
-    private FakeDragon addDragon(Player player, String message) {
-        FakeDragon dragon = Util.newDragon(message, getDragonLocation(player.getLocation()));
-        Util.sendPacket(player, dragon.getSpawnPacket());
-        this.players.put(player.getUniqueId(), dragon);
-        return dragon;
+    /**
+     * Checks whether the given player has a bar.<br>
+     * Changes made off the main thread are only reflected once they have been applied with the next update.
+     *
+     * @param player The player who should be checked.
+     * @return True, if the player has a bar, False otherwise.
+     */
+    public boolean hasBar(Player player) {
+        return this.bars.hasBar(player);
     }
 
-    private FakeDragon addDragon(Player player, Location loc, String message) {
-        FakeDragon dragon = Util.newDragon(message, getDragonLocation(loc));
-        Util.sendPacket(player, dragon.getSpawnPacket());
-        this.players.put(player.getUniqueId(), dragon);
-        return dragon;
+    /**
+     * Removes the bar set using {@link #setMessage(Player, String, float)} from the given player.<br>
+     * If the player has no such bar, this method does nothing.<br>
+     * This method may be called from any thread.
+     *
+     * @param player The player whose bar should be removed.
+     */
+    public void removeBar(Player player) {
+        this.bars.sync(() -> this.bars.removeEntry(player, BarManager.DEFAULT_OWNER));
     }
 
-    private Location getDragonLocation(Location loc) {
-        if (Util.isBelowGround) {
-            loc.subtract(0, 300, 0);
-            return loc;
-        }
+    /**
+     * Removes the bar set using {@link #setMessage(Player, String, float)} from each of the given players.<br>
+     * The players are copied, so the collection may be changed afterwards.<br>
+     * This method may be called from any thread.
+     *
+     * @param players The players whose bars should be removed.
+     */
+    public void removeBar(Collection<? extends Player> players) {
+        Validate.notNull(players, "Players cannot be null");
 
-        float pitch = loc.getPitch();
+        List<Player> copy = new ArrayList<>(players);
+        this.bars.sync(() -> this.bars.removeEntries(copy, BarManager.DEFAULT_OWNER));
+    }
 
-        if (pitch >= 55) {
-            loc.add(0, -300, 0);
-        } else if (pitch <= -55) {
-            loc.add(0, 300, 0);
-        } else {
-            loc = loc.getBlock().getRelative(getDirection(loc), getServer().getViewDistance() * 16).getLocation();
-        }
+    /**
+     * Removes the bar set using {@link #setMessage(Player, String, float)} from every online player.<br>
+     * This method may be called from any thread.
+     */
+    public void removeBar() {
+        this.bars.sync(() -> this.bars.removeEntries(getServer().getOnlinePlayers(), BarManager.DEFAULT_OWNER));
+    }
 
-        return loc;
+    /**
+     * Removes the bar of the given owner from the given player.<br>
+     * If another bar is left for the player, it is shown instead.<br>
+     * This method may be called from any thread.
+     *
+     * @param player The player whose bar should be removed.
+     * @param owner  The owner of the bar.
+     */
+    public void removeBar(Player player, Object owner) {
+        this.bars.sync(() -> this.bars.removeEntry(player, owner));
     }
 
     @Nonnull
     @Override
     public BossBar newBossBar() {
-        return new BarApiBossBar();
+        return this.bars.newBossBar(false, 0);
     }
 
-    private final class BarApiBossBar implements BossBar {
-        private String title = "null";
-        private double progress = 1d;
-        private boolean visible = true;
-        private final Set<Player> players = new HashSet<>();
-
-        private void update() {
-            for (Player p : this.players) {
-                update(p);
-            }
-        }
-
-        private void update(Player p) {
-            setMessage(p, this.title, (float) (this.progress * 100d));
-        }
-
-        @Nonnull
-        @Override
-        public String title() {
-            return this.title;
-        }
-
-        @Nonnull
-        @Override
-        public BossBar title(@Nonnull String title) {
-            this.title = Text.colorize(title);
-            update();
-            return this;
-        }
-
-        @Override
-        public double progress() {
-            return this.progress;
-        }
-
-        @Nonnull
-        @Override
-        public BossBar progress(double progress) {
-            this.progress = progress;
-            update();
-            return this;
-        }
-
-        @Nonnull
-        @Override
-        public BossBarColor color() {
-            return BossBarColor.defaultColor();
-        }
-
-        @Nonnull
-        @Override
-        public BossBar color(@Nonnull BossBarColor color) {
-            return this;
-        }
-
-        @Nonnull
-        @Override
-        public BossBarStyle style() {
-            return BossBarStyle.defaultStyle();
-        }
-
-        @Nonnull
-        @Override
-        public BossBar style(@Nonnull BossBarStyle style) {
-            return this;
-        }
-
-        @Override
-        public boolean visible() {
-            return this.visible;
-        }
-
-        @Nonnull
-        @Override
-        public BossBar visible(boolean visible) {
-            this.visible = visible;
-
-            if (!visible) {
-                for (Player p : this.players) {
-                    removeBar(p);
-                }
-            } else {
-                update();
-            }
-
-            return this;
-        }
-
-        @Nonnull
-        @Override
-        public List<Player> players() {
-            return new ArrayList<>(this.players);
-        }
-
-        @Override
-        public void addPlayer(@Nonnull Player player) {
-            if (this.players.add(player)) {
-                update(player);
-            }
-        }
-
-        @Override
-        public void removePlayer(@Nonnull Player player) {
-            if (this.players.remove(player)) {
-                removeBar(player);
-            }
-        }
-
-        @Override
-        public void removeAll() {
-            for (Player p : this.players) {
-                removePlayer(p);
-            }
-        }
+    /**
+     * Creates a new boss bar.
+     *
+     * @param exact Whether the progress should be sent as is, rather than rounded to what the client can draw.
+     * @return The boss bar.
+     */
+    @Nonnull
+    public BossBar newBossBar(boolean exact) {
+        return newBossBar(exact, 0);
+    }
 
-        @Override
-        public void close() {
-            removeAll();
-        }
+    /**
+     * Creates a new boss bar, which is shown over bars of a lower priority for players seeing several.
+     *
+     * @param exact    Whether the progress should be sent as is, rather than rounded to what the client can draw.
+     * @param priority The priority of the bar.
+     * @return The boss bar.
+     */
+    @Nonnull
+    public BossBar newBossBar(boolean exact, int priority) {
+        return this.bars.newBossBar(exact, priority);
     }
 }
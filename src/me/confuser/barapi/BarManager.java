@@ -0,0 +1,933 @@
+package me.confuser.barapi;
+
+import me.confuser.barapi.nms.FakeDragon;
+import me.lucko.helper.bossbar.BossBar;
+import me.lucko.helper.bossbar.BossBarColor;
+import me.lucko.helper.bossbar.BossBarStyle;
+import me.lucko.helper.text.Text;
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the bars of every player and sends them to their clients.
+ * <p>
+ * This holds everything BarAPI does besides being a plugin, so it can also be driven outside of a server,
+ * e.g. by the benchmarks.
+ *
+ * @author James Mortemore
+ */
+final class BarManager {
+
+    private static final TitleCache cleanedTitles = new TitleCache(512, BarManager::truncate);
+    private static final TitleCache colorizedTitles = new TitleCache(512, Text::colorize);
+    // the owner of bars set without one, through the original single bar methods
+    static final Object DEFAULT_OWNER = new Object();
+    // how many ticks after a teleport the dragon is moved
+    private static final long TELEPORT_DELAY = 2;
+    private final BarMetrics metrics;
+    private final Logger logger;
+    private Map<UUID, FakeDragon> players = new ConcurrentHashMap<>();
+    // the bars requested for each player, only touched on the main thread
+    private Map<UUID, BarStack> stacks = new HashMap<>();
+    private Map<UUID, TimingWheel.Timeout> timers = new ConcurrentHashMap<>();
+    // drives every timed bar from a single task
+    private TimingWheel timerWheel = new TimingWheel(256);
+    private final long timerInterval;
+    // players whose bar changed since the last flush
+    private Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    // changes requested off the main thread, applied at the start of the next flush
+    private Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    // watchers built during the current flush, shared by every dragon showing the same state
+    private Map<WatcherKey, Object> watchers = new HashMap<>();
+    // metadata updates of the current flush, grouped by identical packet
+    private Map<UpdateKey, List<Player>> updates = new HashMap<>();
+    // packets waiting to be sent at the end of the next flush, in order, per player
+    private Map<Player, List<Object>> outbox = new LinkedHashMap<>();
+    private final double trackerDistance;
+    private final float trackerAngle;
+    // teleports waiting for the client to load the destination, at most one per player
+    private Map<UUID, PendingTeleport> teleports = new HashMap<>();
+    private final double teleportDistance;
+    // the distance in blocks at which dragons are placed in front of players
+    private final int viewDistance;
+    // players whose shown bar has a progress function, only touched on the main thread
+    private Map<UUID, Player> varying = new LinkedHashMap<>();
+    // how many progress functions there have to be before they are evaluated in parallel
+    private final int parallelThreshold;
+    // progress functions that threw, so each is only reported once, only touched on the main thread
+    private Set<ToDoubleFunction<?>> failing = Collections.newSetFromMap(new WeakHashMap<>());
+    // reused for reading player locations on the main thread
+    private final Location location = new Location(null, 0, 0, 0);
+    private long ticks = 0;
+    // how often dragons are sent and tracked, slowed down while the server is struggling
+    private final UpdateRate rate;
+    // whether dragons have to follow their players, which is the case whenever they are not below the ground
+    private final boolean tracking;
+    private long nextFlush = 0;
+    private long nextTrack = 0;
+
+    BarManager(Plugin plugin, ConfigurationSection config, BarMetrics metrics) {
+        this.metrics = metrics;
+        this.logger = plugin.getLogger();
+        metrics.setActiveBars(this.players::size);
+        this.timerInterval = Math.max(1, config.getInt("timerInterval", 20));
+        this.trackerDistance = config.getDouble("tracker.distance", 8);
+        this.trackerAngle = (float) config.getDouble("tracker.angle", 30);
+        this.teleportDistance = config.getDouble("teleport.distance", 64);
+        this.viewDistance = plugin.getServer().getViewDistance() * 16;
+        this.parallelThreshold = config.getInt("progress.parallelThreshold", 256);
+        this.rate = new UpdateRate(plugin.getServer(), config);
+        this.tracking = !Util.isBelowGround;
+        metrics.setUpdateInterval(this.rate::getUpdateInterval);
+        metrics.setTickTime(this.rate::getTickTime);
+    }
+
+    static String cleanMessage(String message) {
+        return cleanedTitles.get(message);
+    }
+
+    private static String truncate(String message) {
+        if (message.length() > 64) {
+            message = message.substring(0, 64);
+
+            // don't leave half a colour code at the end
+            if (message.charAt(63) == '\u00A7')
+                message = message.substring(0, 63);
+        }
+
+        return message;
+    }
+
+    private static BlockFace getDirection(float yaw) {
+        float dir = Math.round((yaw % 360) / 90);
+        if (dir == -4 || dir == 0 || dir == 4)
+            return BlockFace.SOUTH;
+        if (dir == -1 || dir == 3)
+            return BlockFace.EAST;
+        if (dir == -2 || dir == 2)
+            return BlockFace.NORTH;
+        if (dir == -3 || dir == 1)
+            return BlockFace.WEST;
+        return null;
+    }
+
+    /**
+     * Advances the timers of timed bars by one tick, and flushes and tracks whenever their current interval is up.
+     */
+    void tick() {
+        this.ticks++;
+        this.rate.tick();
+        this.timerWheel.advance();
+
+        if (!this.teleports.isEmpty()) {
+            resolveTeleports();
+        }
+
+        if (this.ticks >= this.nextFlush) {
+            long start = System.nanoTime();
+            flush();
+            this.rate.flushed(System.nanoTime() - start);
+            this.nextFlush = this.ticks + this.rate.getUpdateInterval();
+        }
+
+        if (this.tracking && this.ticks >= this.nextTrack) {
+            track();
+            this.nextTrack = this.ticks + this.rate.getTrackerInterval();
+        }
+
+        // teleports and tracker moves since the last flush
+        dispatch();
+    }
+
+    /**
+     * Forgets every bar, without sending anything.
+     */
+    void clear() {
+        this.players.clear();
+        this.stacks.clear();
+        this.dirty.clear();
+        this.pending.clear();
+        this.outbox.clear();
+        this.varying.clear();
+
+        this.timerWheel.clear();
+        this.timers.clear();
+        this.teleports.clear();
+    }
+
+    /**
+     * Queues moving the player's dragon after a teleport or respawn.<br>
+     * Several teleports in quick succession are combined, and only the last one is acted on two ticks later.
+     *
+     * @param respawn Whether the client forgets its entities, i.e. on a respawn or change of world.
+     */
+    void handleTeleport(Player player, Location loc, boolean respawn) {
+        if (!hasBar(player)) {
+            return;
+        }
+
+        PendingTeleport pending = this.teleports.get(player.getUniqueId());
+
+        if (pending == null) {
+            this.teleports.put(player.getUniqueId(), new PendingTeleport(loc, respawn, this.ticks + TELEPORT_DELAY));
+        } else {
+            pending.loc = loc;
+            pending.respawn |= respawn;
+            pending.due = this.ticks + TELEPORT_DELAY;
+        }
+    }
+
+    private void resolveTeleports() {
+        Iterator<Map.Entry<UUID, PendingTeleport>> it = this.teleports.entrySet().iterator();
+
+        while (it.hasNext()) {
+            Map.Entry<UUID, PendingTeleport> entry = it.next();
+            PendingTeleport pending = entry.getValue();
+
+            if (pending.due > this.ticks)
+                continue;
+
+            Player player = Bukkit.getPlayer(entry.getKey());
+
+            // resolved once the client caught up, by then only the latest teleport is left
+            if (player != null && !Util.isWritable(player))
+                continue;
+
+            it.remove();
+
+            FakeDragon dragon = this.players.get(entry.getKey());
+
+            // not yet spawned dragons are placed wherever the player is on the next flush anyway
+            if (player == null || dragon == null || !dragon.isSpawned())
+                continue;
+
+            if (!pending.respawn && dragon.isNear(pending.loc, this.teleportDistance)) {
+                dragon.setAnchor(pending.loc);
+                place(dragon, pending.loc);
+
+                long start = System.nanoTime();
+                Object packet = dragon.getTeleportPacket();
+                this.metrics.built(BarMetrics.Packet.TELEPORT, start, 1);
+                send(player, packet);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            Object packet = dragon.getDestroyPacket();
+            this.metrics.built(BarMetrics.Packet.DESTROY, start, 1);
+            send(player, packet);
+
+            // respawned with the same entity ID and state on the next flush
+            place(dragon, pending.loc);
+            dragon.markDestroyed();
+            this.dirty.add(entry.getKey());
+        }
+    }
+
+    /**
+     * Moves the dragons of players who moved or turned far enough that it could leave their view.
+     */
+    void track() {
+        for (Map.Entry<UUID, FakeDragon> entry : this.players.entrySet()) {
+            FakeDragon dragon = entry.getValue();
+
+            if (!dragon.isSpawned())
+                continue;
+
+            Player p = Bukkit.getPlayer(entry.getKey());
+
+            // the dragon is still anchored where it was, so it is moved once the client caught up
+            if (!Util.isWritable(p))
+                continue;
+
+            Location loc = p.getLocation(this.location);
+
+            if (dragon.isMoved(loc, this.trackerDistance, this.trackerAngle)) {
+                dragon.setAnchor(loc);
+                place(dragon, loc);
+
+                long start = System.nanoTime();
+                Object packet = dragon.getTeleportPacket();
+                this.metrics.built(BarMetrics.Packet.TELEPORT, start, 1);
+                send(p, packet);
+            }
+        }
+    }
+
+    void scheduleTimer(Player player, long duration, long remaining) {
+        long step = Math.min(this.timerInterval, remaining);
+
+        this.timers.put(player.getUniqueId(), this.timerWheel.schedule(() -> {
+            BarStack stack = this.stacks.get(player.getUniqueId());
+            BarStack.Entry entry = stack == null ? null : stack.find(DEFAULT_OWNER);
+            long left = remaining - step;
+
+            if (entry == null)
+                return;
+
+            if (left <= 0) {
+                this.timers.remove(player.getUniqueId());
+                removeEntry(player, DEFAULT_OWNER);
+                return;
+            }
+
+            entry.percent = (float) left / duration * 100F;
+            entry.exact = false;
+            render(player, stack);
+
+            scheduleTimer(player, duration, left);
+        }, step));
+    }
+
+    /**
+     * Runs the change now when on the main thread, otherwise queues it for the next flush.
+     */
+    void sync(Runnable change) {
+        if (Bukkit.isPrimaryThread()) {
+            change.run();
+        } else {
+            this.pending.add(change);
+        }
+    }
+
+    /**
+     * @param entityId The entity ID a newly spawned dragon should use, or -1 to allocate one.
+     * @param exact    Whether the health should not be rounded to the client's resolution.
+     */
+    void setBar(Player player, Object owner, int priority, String name, float percent, int entityId, boolean exact) {
+        setBar(player, owner, priority, name, percent, null, entityId, exact);
+    }
+
+    /**
+     * @param progress The function giving the percent of the player with every flush, or null to use the given percent.
+     */
+    void setBar(Player player, Object owner, int priority, String name, float percent, ToDoubleFunction<? super Player> progress, int entityId, boolean exact) {
+        // queued changes and boss bars can outlive the player, who would never be cleaned up again
+        if (!player.isOnline())
+            return;
+
+        if (owner == DEFAULT_OWNER) {
+            cancelTimer(player);
+        }
+
+        BarStack stack = this.stacks.computeIfAbsent(player.getUniqueId(), k -> new BarStack());
+        BarStack.Entry entry = stack.get(owner, priority);
+
+        entry.name = name;
+        entry.percent = percent;
+        entry.progress = progress;
+        entry.exact = exact;
+        entry.entityId = entityId;
+
+        render(player, stack);
+    }
+
+    /**
+     * Sets the same bar for each of the players, like {@link #setBar(Player, Object, int, String, float, int, boolean)}.
+     * <p>
+     * Dragons spawned by this all get the same entity ID, so their packets are identical and built once.
+     */
+    void setBars(Iterable<? extends Player> players, Object owner, int priority, String name, float percent, boolean exact) {
+        int entityId = FakeDragon.nextEntityId();
+
+        for (Player player : players) {
+            setBar(player, owner, priority, name, percent, entityId, exact);
+        }
+    }
+
+    void setBars(Iterable<? extends Player> players, Object owner, int priority, String name, ToDoubleFunction<? super Player> progress) {
+        for (Player player : players) {
+            setBar(player, owner, priority, name, 100F, progress, -1, false);
+        }
+    }
+
+    void removeEntries(Iterable<? extends Player> players, Object owner) {
+        for (Player player : players) {
+            removeEntry(player, owner);
+        }
+    }
+
+    void removeEntry(Player player, Object owner) {
+        BarStack stack = this.stacks.get(player.getUniqueId());
+
+        if (stack == null || !stack.remove(owner))
+            return;
+
+        if (owner == DEFAULT_OWNER) {
+            cancelTimer(player);
+        }
+
+        render(player, stack);
+    }
+
+    /**
+     * Shows the winning bar of the player on their dragon, or removes the dragon if no bars are left.
+     */
+    private void render(Player player, BarStack stack) {
+        BarStack.Entry top = stack.top();
+
+        if (top == null) {
+            destroyBar(player);
+            return;
+        }
+
+        if (top.progress != null) {
+            this.varying.put(player.getUniqueId(), player);
+        } else {
+            this.varying.remove(player.getUniqueId());
+        }
+
+        FakeDragon dragon = this.players.get(player.getUniqueId());
+
+        if (dragon == null) {
+            dragon = addDragon(player, top.name);
+
+            if (top.entityId != -1) {
+                dragon.setEntityId(top.entityId);
+            }
+        }
+
+        float health = (top.percent / 100f) * dragon.getMaxHealth();
+
+        dragon.name = top.name;
+        dragon.health = top.exact ? health : dragon.quantize(health);
+
+        // sent on the next flush, so that several changes within a tick only cost one update
+        this.dirty.add(player.getUniqueId());
+    }
+
+    /**
+     * Checks whether the given player has a bar.<br>
+     * Changes made off the main thread are only reflected once they have been applied with the next update.
+     *
+     * @param player The player who should be checked.
+     * @return True, if the player has a bar, False otherwise.
+     */
+    boolean hasBar(Player player) {
+        return this.players.get(player.getUniqueId()) != null;
+    }
+
+    void destroyBar(Player player) {
+        FakeDragon dragon = forget(player.getUniqueId());
+
+        if (dragon != null && dragon.isSpawned()) {
+            long start = System.nanoTime();
+            Object packet = dragon.getDestroyPacket();
+            this.metrics.built(BarMetrics.Packet.DESTROY, start, 1);
+            send(player, packet);
+        }
+    }
+
+    /**
+     * Drops everything kept for the player, without sending anything.
+     *
+     * @return The player's dragon, or null if they had none.
+     */
+    private FakeDragon forget(UUID uuid) {
+        this.stacks.remove(uuid);
+        this.teleports.remove(uuid);
+        this.varying.remove(uuid);
+        this.dirty.remove(uuid);
+
+        TimingWheel.Timeout timer = this.timers.remove(uuid);
+
+        if (timer != null) {
+            timer.cancel();
+        }
+
+        return this.players.remove(uuid);
+    }
+
+    private void cancelTimer(Player player) {
+        TimingWheel.Timeout timer = this.timers.remove(player.getUniqueId());
+
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    /**
+     * Sends every bar which changed since the last flush.
+     */
+    void flush() {
+        long flushStart = System.nanoTime();
+        Runnable change;
+
+        while ((change = this.pending.poll()) != null) {
+            // one broken change must not hold up everyone else's bars
+            try {
+                change.run();
+            } catch (Exception e) {
+                this.logger.log(Level.SEVERE, "Could not apply a bar change", e);
+            }
+        }
+
+        if (!this.varying.isEmpty()) {
+            evaluate();
+        }
+
+        if (this.dirty.isEmpty() && this.outbox.isEmpty())
+            return;
+
+        Iterator<UUID> it = this.dirty.iterator();
+
+        while (it.hasNext()) {
+            UUID uuid = it.next();
+            Player player = Bukkit.getPlayer(uuid);
+            FakeDragon dragon = this.players.get(uuid);
+
+            // slow clients stay dirty, and get the latest state in one update once their connection caught up
+            if (player != null && dragon != null && !Util.isWritable(player)) {
+                this.metrics.deferredUpdates.increment();
+                continue;
+            }
+
+            it.remove();
+
+            // left without BarAPI seeing them quit, so there is nobody to send the bar to
+            if (player == null) {
+                forget(uuid);
+                continue;
+            }
+
+            if (dragon != null) {
+                flush(dragon, player);
+            }
+        }
+
+        // players seeing the same entity in the same state get the very same packet
+        for (Map.Entry<UpdateKey, List<Player>> entry : this.updates.entrySet()) {
+            UpdateKey key = entry.getKey();
+
+            long start = System.nanoTime();
+            Object packet = key.dragon.getMetaPacket(getWatcher(key.dragon, false, key.name, key.health));
+            this.metrics.built(BarMetrics.Packet.META, start, entry.getValue().size());
+
+            for (Player player : entry.getValue()) {
+                send(player, packet);
+            }
+        }
+
+        this.watchers.clear();
+        this.updates.clear();
+
+        dispatch();
+        this.metrics.flushed(flushStart);
+    }
+
+    /**
+     * Evaluates the progress functions of every player showing one, and updates those whose health changed.
+     * <p>
+     * Large numbers of functions are evaluated in parallel, but the results are always applied on this thread.
+     */
+    private void evaluate() {
+        int size = this.varying.size();
+        Player[] viewers = this.varying.values().toArray(new Player[size]);
+        BarStack.Entry[] entries = new BarStack.Entry[size];
+        double[] values = new double[size];
+        Throwable[] errors = new Throwable[size];
+
+        for (int i = 0; i < size; i++) {
+            entries[i] = this.stacks.get(viewers[i].getUniqueId()).top();
+        }
+
+        if (size >= this.parallelThreshold) {
+            IntStream.range(0, size).parallel().forEach(i -> evaluate(entries, viewers, values, errors, i));
+        } else {
+            for (int i = 0; i < size; i++) {
+                evaluate(entries, viewers, values, errors, i);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            BarStack.Entry entry = entries[i];
+
+            if (errors[i] != null) {
+                // a broken function throws on every flush, so it is only reported the first time
+                if (this.failing.add(entry.progress)) {
+                    this.logger.log(Level.SEVERE, "Could not evaluate the progress of " + viewers[i].getName() + "'s bar", errors[i]);
+                }
+                continue;
+            }
+
+            FakeDragon dragon = this.players.get(viewers[i].getUniqueId());
+
+            if (dragon == null || Double.isNaN(values[i]))
+                continue;
+
+            entry.percent = (float) Math.max(0, Math.min(100, values[i]));
+
+            float health = (entry.percent / 100f) * dragon.getMaxHealth();
+            health = entry.exact ? health : dragon.quantize(health);
+
+            // only players whose bar visibly changed get an update
+            if (health != dragon.health) {
+                dragon.health = health;
+                this.dirty.add(viewers[i].getUniqueId());
+            }
+        }
+    }
+
+    private static void evaluate(BarStack.Entry[] entries, Player[] viewers, double[] values, Throwable[] errors, int i) {
+        try {
+            values[i] = entries[i].progress.applyAsDouble(viewers[i]);
+        } catch (Throwable e) {
+            errors[i] = e;
+        }
+    }
+
+    /**
+     * Queues a packet for the player, to be sent with the player's other packets at the end of the flush.
+     */
+    private void send(Player player, Object packet) {
+        this.outbox.computeIfAbsent(player, k -> new ArrayList<>(4)).add(packet);
+    }
+
+    /**
+     * Sends every queued packet, each player's packets as one batch.
+     */
+    void dispatch() {
+        if (this.outbox.isEmpty())
+            return;
+
+        Util.sendPackets(this.outbox);
+        this.outbox = new LinkedHashMap<>();
+    }
+
+    private void flush(FakeDragon dragon, Player player) {
+        if (!dragon.isSpawned()) {
+            long start = System.nanoTime();
+            Object packet = dragon.getSpawnPacket();
+            this.metrics.built(BarMetrics.Packet.SPAWN, start, 1);
+            send(player, packet);
+
+            sendDragon(dragon, player);
+        } else {
+            boolean nameChanged = dragon.isNameChanged();
+            boolean healthChanged = dragon.isHealthChanged();
+
+            // the dragon is already spawned for this player, so only send the fields which changed
+            if (nameChanged || healthChanged) {
+                this.updates.computeIfAbsent(new UpdateKey(dragon, nameChanged, healthChanged), k -> new ArrayList<>()).add(player);
+            }
+        }
+
+        dragon.markSent();
+    }
+
+    private void sendDragon(FakeDragon dragon, Player player) {
+        Location loc = player.getLocation(this.location);
+        dragon.setAnchor(loc);
+        place(dragon, loc);
+
+        long start = System.nanoTime();
+        Object meta = dragon.getMetaPacket(getWatcher(dragon, true, true, true));
+        this.metrics.built(BarMetrics.Packet.META, start, 1);
+        send(player, meta);
+
+        start = System.nanoTime();
+        Object teleport = dragon.getTeleportPacket();
+        this.metrics.built(BarMetrics.Packet.TELEPORT, start, 1);
+        send(player, teleport);
+    }
+
+    /**
+     * Gets a watcher for the dragon's current state, reusing one already built during this flush for the same state.
+     */
+    private Object getWatcher(FakeDragon dragon, boolean full, boolean name, boolean health) {
+        WatcherKey key = new WatcherKey(dragon.name, dragon.health, full, name, health);
+        Object watcher = this.watchers.get(key);
+
+        if (watcher == null) {
+            watcher = full ? dragon.getWatcher() : dragon.getUpdateWatcher(name, health);
+            this.watchers.put(key, watcher);
+        }
+
+        return watcher;
+    }
+
+    private FakeDragon addDragon(Player player, String message) {
+        Location loc = player.getLocation(this.location);
+        FakeDragon dragon = Util.newDragon(message, loc);
+
+        place(dragon, loc);
+        this.players.put(player.getUniqueId(), dragon);
+        return dragon;
+    }
+
+    /**
+     * Positions the dragon where the player at the given location can see it, from the coordinates alone.
+     */
+    private void place(FakeDragon dragon, Location loc) {
+        double x = loc.getX();
+        double y = loc.getY();
+        double z = loc.getZ();
+        float yaw = loc.getYaw();
+        float pitch = loc.getPitch();
+
+        if (Util.isBelowGround) {
+            y -= 300;
+        } else if (pitch >= 55) {
+            y -= 300;
+        } else if (pitch <= -55) {
+            y += 300;
+        } else {
+            // at the edge of the view distance, in the direction the player is facing
+            BlockFace direction = getDirection(yaw);
+            x = Math.floor(x) + direction.getModX() * this.viewDistance;
+            z = Math.floor(z) + direction.getModZ() * this.viewDistance;
+            yaw = 0;
+            pitch = 0;
+        }
+
+        dragon.setX((int) Math.floor(x));
+        dragon.setY((int) Math.floor(y));
+        dragon.setZ((int) Math.floor(z));
+        dragon.setYaw((int) yaw);
+        dragon.setPitch((int) pitch);
+    }
+
+    @Nonnull
+    BossBar newBossBar(boolean exact, int priority) {
+        return new BarApiBossBar(exact, priority);
+    }
+
+    private final class BarApiBossBar implements BossBar {
+        private volatile String title = "null";
+        private volatile double progress = 1d;
+        private volatile boolean visible = true;
+        private final Set<Player> players = new CopyOnWriteArraySet<>();
+        // shared by the dragons of all viewers, so they can be sent identical packets
+        private final int entityId = FakeDragon.nextEntityId();
+        private final boolean exact;
+        private final int priority;
+
+        private BarApiBossBar(boolean exact, int priority) {
+            this.exact = exact;
+            this.priority = priority;
+        }
+
+        private void update() {
+            float percent = (float) (this.progress * 100d);
+            Validate.isTrue(0F <= percent && percent <= 100F, "Progress must be between 0 and 1, but was: ", this.progress);
+
+            // every viewer shows the same state, so only clean it once
+            String name = cleanMessage(this.title);
+
+            sync(() -> {
+                for (Player p : this.players) {
+                    setBar(p, this, this.priority, name, percent, this.entityId, this.exact);
+                }
+            });
+        }
+
+        private void update(Player p) {
+            float percent = (float) (this.progress * 100d);
+            Validate.isTrue(0F <= percent && percent <= 100F, "Progress must be between 0 and 1, but was: ", this.progress);
+
+            String name = cleanMessage(this.title);
+            sync(() -> setBar(p, this, this.priority, name, percent, this.entityId, this.exact));
+        }
+
+        @Nonnull
+        @Override
+        public String title() {
+            return this.title;
+        }
+
+        @Nonnull
+        @Override
+        public BossBar title(@Nonnull String title) {
+            this.title = colorizedTitles.get(title);
+            update();
+            return this;
+        }
+
+        @Override
+        public double progress() {
+            return this.progress;
+        }
+
+        @Nonnull
+        @Override
+        public BossBar progress(double progress) {
+            this.progress = progress;
+            update();
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public BossBarColor color() {
+            return BossBarColor.defaultColor();
+        }
+
+        @Nonnull
+        @Override
+        public BossBar color(@Nonnull BossBarColor color) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public BossBarStyle style() {
+            return BossBarStyle.defaultStyle();
+        }
+
+        @Nonnull
+        @Override
+        public BossBar style(@Nonnull BossBarStyle style) {
+            return this;
+        }
+
+        @Override
+        public boolean visible() {
+            return this.visible;
+        }
+
+        @Nonnull
+        @Override
+        public BossBar visible(boolean visible) {
+            this.visible = visible;
+
+            if (!visible) {
+                for (Player p : this.players) {
+                    sync(() -> removeEntry(p, this));
+                }
+            } else {
+                update();
+            }
+
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public List<Player> players() {
+            return new ArrayList<>(this.players);
+        }
+
+        @Override
+        public void addPlayer(@Nonnull Player player) {
+            if (this.players.add(player)) {
+                update(player);
+            }
+        }
+
+        @Override
+        public void removePlayer(@Nonnull Player player) {
+            if (this.players.remove(player)) {
+                sync(() -> removeEntry(player, this));
+            }
+        }
+
+        @Override
+        public void removeAll() {
+            for (Player p : this.players) {
+                removePlayer(p);
+            }
+        }
+
+        @Override
+        public void close() {
+            removeAll();
+        }
+    }
+
+    private static final class PendingTeleport {
+        private Location loc;
+        private boolean respawn;
+        private long due;
+
+        private PendingTeleport(Location loc, boolean respawn, long due) {
+            this.loc = loc;
+            this.respawn = respawn;
+            this.due = due;
+        }
+    }
+
+    private static final class WatcherKey {
+        private final String name;
+        private final float health;
+        private final int fields;
+
+        private WatcherKey(String name, float health, boolean full, boolean nameChanged, boolean healthChanged) {
+            this.name = name;
+            this.health = health;
+            this.fields = (full ? 4 : 0) | (nameChanged ? 2 : 0) | (healthChanged ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof WatcherKey))
+                return false;
+
+            WatcherKey other = (WatcherKey) o;
+            return this.fields == other.fields && Float.compare(this.health, other.health) == 0 && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.name.hashCode() * 31 + Float.floatToIntBits(this.health)) * 31 + this.fields;
+        }
+    }
+
+    private static final class UpdateKey {
+        private final FakeDragon dragon;
+        private final int id;
+        private final boolean name;
+        private final boolean health;
+        private final WatcherKey watcher;
+
+        private UpdateKey(FakeDragon dragon, boolean name, boolean health) {
+            this.dragon = dragon;
+            this.id = dragon.getEntityId();
+            this.name = name;
+            this.health = health;
+            this.watcher = new WatcherKey(dragon.name, dragon.health, false, name, health);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof UpdateKey))
+                return false;
+
+            UpdateKey other = (UpdateKey) o;
+            return this.id == other.id && this.watcher.equals(other.watcher);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id * 31 + this.watcher.hashCode();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Counts the packets BarAPI sends and times the work it does on the main thread.
+ * <p>
+ * Recording only increments counters, so it stays cheap enough to be always on.
+ */
+final class BarMetrics implements BarMetricsMBean {
+
+    enum Packet {
+        SPAWN, META, TELEPORT, DESTROY
+    }
+
+    private final LongAdder[] packets = new LongAdder[Packet.values().length];
+    private final Histogram flushTime = new Histogram();
+    // the time spent building packets through reflection
+    private final Histogram buildTime = new Histogram();
+    // the sides of MixedBossBarFactory bars currently existing, and the changes forwarded to them
+    final LongAdder legacyBars = new LongAdder();
+    final LongAdder modernBars = new LongAdder();
+    final LongAdder legacyUpdates = new LongAdder();
+    final LongAdder modernUpdates = new LongAdder();
+    // flushes in which a player's update was held back because their connection was backed up
+    final LongAdder deferredUpdates = new LongAdder();
+    private volatile IntSupplier activeBars = () -> 0;
+    private volatile IntSupplier updateInterval = () -> 1;
+    private volatile DoubleSupplier tickTime = () -> 0;
+    private volatile long since = System.currentTimeMillis();
+
+    BarMetrics() {
+        for (int i = 0; i < this.packets.length; i++) {
+            this.packets[i] = new LongAdder();
+        }
+    }
+
+    void setActiveBars(IntSupplier activeBars) {
+        this.activeBars = activeBars;
+    }
+
+    void setUpdateInterval(IntSupplier updateInterval) {
+        this.updateInterval = updateInterval;
+    }
+
+    void setTickTime(DoubleSupplier tickTime) {
+        this.tickTime = tickTime;
+    }
+
+    /**
+     * Records a packet built since the given {@link System#nanoTime()} and sent to the given number of players.
+     */
+    void built(Packet type, long start, int recipients) {
+        this.buildTime.record(System.nanoTime() - start);
+        this.packets[type.ordinal()].add(recipients);
+    }
+
+    void flushed(long start) {
+        this.flushTime.record(System.nanoTime() - start);
+    }
+
+    long getPackets(Packet type) {
+        return this.packets[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of seconds the current counts were recorded over.
+     */
+    double getSeconds() {
+        return Math.max(1, System.currentTimeMillis() - this.since) / 1000d;
+    }
+
+    @Override
+    public long getSpawnPackets() {
+        return getPackets(Packet.SPAWN);
+    }
+
+    @Override
+    public long getMetaPackets() {
+        return getPackets(Packet.META);
+    }
+
+    @Override
+    public long getTeleportPackets() {
+        return getPackets(Packet.TELEPORT);
+    }
+
+    @Override
+    public long getDestroyPackets() {
+        return getPackets(Packet.DESTROY);
+    }
+
+    @Override
+    public int getActiveBars() {
+        return this.activeBars.getAsInt();
+    }
+
+    @Override
+    public int getUpdateInterval() {
+        return this.updateInterval.getAsInt();
+    }
+
+    @Override
+    public double getTickTime() {
+        return this.tickTime.getAsDouble();
+    }
+
+    @Override
+    public long getFlushes() {
+        return this.flushTime.count.get();
+    }
+
+    @Override
+    public double getFlushTimeMean() {
+        return this.flushTime.mean();
+    }
+
+    @Override
+    public double getFlushTime99thPercentile() {
+        return this.flushTime.percentile(0.99);
+    }
+
+    @Override
+    public double getFlushTimeMax() {
+        return this.flushTime.max.get() / 1000d;
+    }
+
+    @Override
+    public double getBuildTimeMean() {
+        return this.buildTime.mean();
+    }
+
+    @Override
+    public double getBuildTime99thPercentile() {
+        return this.buildTime.percentile(0.99);
+    }
+
+    @Override
+    public long getLegacyBars() {
+        return this.legacyBars.sum();
+    }
+
+    @Override
+    public long getModernBars() {
+        return this.modernBars.sum();
+    }
+
+    @Override
+    public long getLegacyUpdates() {
+        return this.legacyUpdates.sum();
+    }
+
+    @Override
+    public long getModernUpdates() {
+        return this.modernUpdates.sum();
+    }
+
+    @Override
+    public long getDeferredUpdates() {
+        return this.deferredUpdates.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : this.packets) {
+            adder.reset();
+        }
+
+        this.flushTime.reset();
+        this.buildTime.reset();
+        this.legacyUpdates.reset();
+        this.modernUpdates.reset();
+        this.deferredUpdates.reset();
+        this.since = System.currentTimeMillis();
+    }
+
+    /**
+     * A histogram of durations with one bucket per power of two nanoseconds.
+     * <p>
+     * Percentiles are reported as the upper bound of their bucket, so they are accurate to within a factor of two.
+     */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0)
+                nanos = 0;
+
+            this.buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            this.count.incrementAndGet();
+            this.total.addAndGet(nanos);
+            this.max.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @return The mean duration, in microseconds.
+         */
+        double mean() {
+            long count = this.count.get();
+            return count == 0 ? 0 : this.total.get() / (double) count / 1000d;
+        }
+
+        /**
+         * @return The duration below which the given fraction of durations fall, in microseconds.
+         */
+        double percentile(double fraction) {
+            long count = this.count.get();
+
+            if (count == 0)
+                return 0;
+
+            long target = (long) Math.ceil(count * fraction);
+            long seen = 0;
+
+            for (int i = 0; i < 64; i++) {
+                seen += this.buckets.get(i);
+
+                if (seen >= target) {
+                    return Math.min((1L << i) * 2, this.max.get()) / 1000d;
+                }
+            }
+
+            return this.max.get() / 1000d;
+        }
+
+        void reset() {
+            for (int i = 0; i < 64; i++) {
+                this.buckets.set(i, 0);
+            }
+
+            this.count.set(0);
+            this.total.set(0);
+            this.max.set(0);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+/**
+ * The metrics of BarAPI, as exposed over JMX.
+ * <p>
+ * Packet counts are totals since the metrics were last reset, times are in microseconds.
+ */
+public interface BarMetricsMBean {
+
+    long getSpawnPackets();
+
+    long getMetaPackets();
+
+    long getTeleportPackets();
+
+    long getDestroyPackets();
+
+    int getActiveBars();
+
+    int getUpdateInterval();
+
+    /**
+     * @return The smoothed duration of a tick, in milliseconds.
+     */
+    double getTickTime();
+
+    long getFlushes();
+
+    double getFlushTimeMean();
+
+    double getFlushTime99thPercentile();
+
+    double getFlushTimeMax();
+
+    double getBuildTimeMean();
+
+    double getBuildTime99thPercentile();
+
+    long getLegacyBars();
+
+    long getModernBars();
+
+    long getLegacyUpdates();
+
+    long getModernUpdates();
+
+    long getDeferredUpdates();
+
+    void reset();
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The bars requested for a single player, of which only the one with the highest priority is shown.
+ * <p>
+ * When several bars share the highest priority, the one added first keeps being shown,
+ * so that two bars updating every tick don't take turns.
+ */
+final class BarStack {
+
+    private final List<Entry> entries = new ArrayList<>(2);
+    private long added = 0;
+
+    /**
+     * Gets the entry of the given owner, adding one if it has none yet.
+     */
+    Entry get(Object owner, int priority) {
+        for (Entry entry : this.entries) {
+            if (entry.owner.equals(owner)) {
+                entry.priority = priority;
+                return entry;
+            }
+        }
+
+        Entry entry = new Entry(owner, priority, this.added++);
+        this.entries.add(entry);
+        return entry;
+    }
+
+    Entry find(Object owner) {
+        for (Entry entry : this.entries) {
+            if (entry.owner.equals(owner)) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    boolean remove(Object owner) {
+        for (int i = 0; i < this.entries.size(); i++) {
+            if (this.entries.get(i).owner.equals(owner)) {
+                this.entries.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the entry which should be shown, or null if there is none.
+     */
+    Entry top() {
+        Entry top = null;
+
+        for (Entry entry : this.entries) {
+            if (top == null || entry.priority > top.priority || (entry.priority == top.priority && entry.order < top.order)) {
+                top = entry;
+            }
+        }
+
+        return top;
+    }
+
+    static final class Entry {
+        final Object owner;
+        final long order;
+        int priority;
+        String name;
+        float percent;
+        boolean exact;
+        // evaluated with every flush to get the percent of each player, or null if the percent is fixed
+        ToDoubleFunction<? super Player> progress;
+        // the entity ID a newly spawned dragon should use for this entry, or -1 to allocate one
+        int entityId = -1;
+
+        private Entry(Object owner, int priority, long order) {
+            this.owner = owner;
+            this.priority = priority;
+            this.order = order;
+        }
+    }
+}
@@ -30,153 +30,271 @@ import me.lucko.helper.bossbar.BossBarColor;
 import me.lucko.helper.bossbar.BossBarFactory;
 import me.lucko.helper.bossbar.BossBarStyle;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import us.myles.ViaVersion.api.Via;
 import us.myles.ViaVersion.api.ViaAPI;
 import us.myles.ViaVersion.api.protocol.ProtocolVersion;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-public class MixedBossBarFactory implements BossBarFactory {
+public class MixedBossBarFactory implements BossBarFactory, Listener {
 
     @SuppressWarnings("unchecked")
     private final ViaAPI<Player> viaApi = Via.getAPI();
 
+    // whether each online player is on a pre 1.9 client, resolved once per session
+    private final Map<UUID, Boolean> legacyPlayers = new ConcurrentHashMap<>();
+
     // used for players on 1.8
     private final BarAPI legacyFactory;
     // used for players on 1.9+
     private final BossBarFactory newFactory;
+    private final BarMetrics metrics;
 
     public MixedBossBarFactory(BarAPI legacyFactory, BossBarFactory newFactory) {
         this.legacyFactory = legacyFactory;
         this.newFactory = newFactory;
+        this.metrics = legacyFactory.getMetrics();
     }
 
     @Nonnull
     @Override
     public BossBar newBossBar() {
-        return new MixedBossBar(this.viaApi, this.legacyFactory.newBossBar(), this.newFactory.newBossBar());
+        return new MixedBossBar();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        isLegacy(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        this.legacyPlayers.remove(event.getPlayer().getUniqueId());
     }
 
-    private static final class MixedBossBar implements BossBar {
-        private final ViaAPI<Player> viaApi;
-        private final BossBar legacyBar;
-        private final BossBar newBar;
+    private boolean isLegacy(Player player) {
+        Boolean legacy = this.legacyPlayers.get(player.getUniqueId());
+
+        if (legacy == null) {
+            legacy = this.viaApi.getPlayerVersion(player) < ProtocolVersion.v1_9.getId();
+            this.legacyPlayers.put(player.getUniqueId(), legacy);
+        }
 
-        private MixedBossBar(ViaAPI<Player> viaApi, BossBar legacyBar, BossBar newBar) {
-            this.viaApi = viaApi;
-            this.legacyBar = legacyBar;
-            this.newBar = newBar;
+        return legacy;
+    }
+
+    /**
+     * A bar which hands each member to the legacy or 1.9+ implementation.
+     * <p>
+     * Each side is only created once a member of that protocol joins, and closed
+     * again when its last member leaves. Changes made while a side doesn't exist
+     * are only recorded here, and applied when it is next created.
+     */
+    private final class MixedBossBar implements BossBar {
+        private BossBar legacyBar;
+        private BossBar newBar;
+        private int legacyMembers;
+        private int newMembers;
+        // every member, mapped to whether it was routed to the legacy bar
+        private final Map<Player, Boolean> members = new LinkedHashMap<>();
+        // the last list handed out by players(), until the members change
+        private List<Player> playersView = Collections.emptyList();
+
+        private String title;
+        private double progress = 1d;
+        private BossBarColor color = BossBarColor.defaultColor();
+        private BossBarStyle style = BossBarStyle.defaultStyle();
+        private boolean visible = true;
+
+        private BossBar createBar(BossBarFactory factory) {
+            BossBar bar = factory.newBossBar();
+            if (this.title != null) {
+                bar.title(this.title);
+            }
+            return bar.progress(this.progress).color(this.color).style(this.style).visible(this.visible);
+        }
+
+        /**
+         * Applies a change to each side which currently exists.
+         */
+        private void apply(Consumer<BossBar> change) {
+            if (this.legacyBar != null) {
+                change.accept(this.legacyBar);
+                MixedBossBarFactory.this.metrics.legacyUpdates.increment();
+            }
+            if (this.newBar != null) {
+                change.accept(this.newBar);
+                MixedBossBarFactory.this.metrics.modernUpdates.increment();
+            }
         }
 
         @Nonnull
         @Override
-        public String title() {
-            return this.newBar.title();
+        public synchronized String title() {
+            return this.title == null ? "" : this.title;
         }
 
         @Nonnull
         @Override
-        public BossBar title(@Nonnull String title) {
-            this.legacyBar.title(title);
-            this.newBar.title(title);
+        public synchronized BossBar title(@Nonnull String title) {
+            this.title = title;
+            apply(bar -> bar.title(title));
             return this;
         }
 
         @Override
-        public double progress() {
-            return this.newBar.progress();
+        public synchronized double progress() {
+            return this.progress;
         }
 
         @Nonnull
         @Override
-        public BossBar progress(double progress) {
-            this.legacyBar.progress(progress);
-            this.newBar.progress(progress);
+        public synchronized BossBar progress(double progress) {
+            apply(bar -> bar.progress(progress));
+            this.progress = progress;
             return this;
         }
 
         @Nonnull
         @Override
-        public BossBarColor color() {
-            return this.newBar.color();
+        public synchronized BossBarColor color() {
+            return this.color;
         }
 
         @Nonnull
         @Override
-        public BossBar color(@Nonnull BossBarColor color) {
-            this.legacyBar.color(color);
-            this.newBar.color(color);
+        public synchronized BossBar color(@Nonnull BossBarColor color) {
+            this.color = color;
+            apply(bar -> bar.color(color));
             return this;
         }
 
         @Nonnull
         @Override
-        public BossBarStyle style() {
-            return this.newBar.style();
+        public synchronized BossBarStyle style() {
+            return this.style;
         }
 
         @Nonnull
         @Override
-        public BossBar style(@Nonnull BossBarStyle style) {
-            this.legacyBar.style(style);
-            this.newBar.style(style);
+        public synchronized BossBar style(@Nonnull BossBarStyle style) {
+            this.style = style;
+            apply(bar -> bar.style(style));
             return this;
         }
 
         @Override
-        public boolean visible() {
-            return this.newBar.visible();
+        public synchronized boolean visible() {
+            return this.visible;
         }
 
         @Nonnull
         @Override
-        public BossBar visible(boolean visible) {
-            this.legacyBar.visible(visible);
-            this.newBar.visible(visible);
+        public synchronized BossBar visible(boolean visible) {
+            this.visible = visible;
+            apply(bar -> bar.visible(visible));
             return this;
         }
 
         @Nonnull
         @Override
-        public List<Player> players() {
-            List<Player> ret = new ArrayList<>();
-            ret.addAll(this.legacyBar.players());
-            ret.addAll(this.newBar.players());
-            return ret;
+        public synchronized List<Player> players() {
+            if (this.playersView == null) {
+                this.playersView = Collections.unmodifiableList(new ArrayList<>(this.members.keySet()));
+            }
+
+            return this.playersView;
         }
 
         @Override
-        public void addPlayer(@Nonnull Player player) {
-            int version = this.viaApi.getPlayerVersion(player);
-            if (version < ProtocolVersion.v1_9.getId()) {
+        public synchronized void addPlayer(@Nonnull Player player) {
+            if (this.members.containsKey(player))
+                return;
+
+            boolean legacy = isLegacy(player);
+            this.members.put(player, legacy);
+            this.playersView = null;
+
+            if (legacy) {
+                if (this.legacyMembers++ == 0) {
+                    this.legacyBar = createBar(MixedBossBarFactory.this.legacyFactory);
+                    MixedBossBarFactory.this.metrics.legacyBars.increment();
+                }
                 this.legacyBar.addPlayer(player);
             } else {
+                if (this.newMembers++ == 0) {
+                    this.newBar = createBar(MixedBossBarFactory.this.newFactory);
+                    MixedBossBarFactory.this.metrics.modernBars.increment();
+                }
                 this.newBar.addPlayer(player);
             }
         }
 
         @Override
-        public void removePlayer(@Nonnull Player player) {
-            int version = this.viaApi.getPlayerVersion(player);
-            if (version < ProtocolVersion.v1_9.getId()) {
+        public synchronized void removePlayer(@Nonnull Player player) {
+            Boolean legacy = this.members.remove(player);
+
+            if (legacy == null)
+                return;
+
+            this.playersView = null;
+
+            if (legacy) {
                 this.legacyBar.removePlayer(player);
+                if (--this.legacyMembers == 0) {
+                    closeLegacy();
+                }
             } else {
                 this.newBar.removePlayer(player);
+                if (--this.newMembers == 0) {
+                    closeNew();
+                }
             }
         }
 
         @Override
-        public void removeAll() {
-            this.legacyBar.removeAll();
-            this.newBar.removeAll();
+        public synchronized void removeAll() {
+            close();
         }
 
         @Override
-        public void close() {
+        public synchronized void close() {
+            this.members.clear();
+            this.playersView = Collections.emptyList();
+            this.legacyMembers = 0;
+            this.newMembers = 0;
+
+            if (this.legacyBar != null) {
+                closeLegacy();
+            }
+            if (this.newBar != null) {
+                closeNew();
+            }
+        }
+
+        private void closeLegacy() {
             this.legacyBar.close();
+            this.legacyBar = null;
+            MixedBossBarFactory.this.metrics.legacyBars.decrement();
+        }
+
+        private void closeNew() {
             this.newBar.close();
+            this.newBar = null;
+            MixedBossBarFactory.this.metrics.modernBars.decrement();
         }
     }
 }
@@ -0,0 +1,264 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes serialized packets straight into players' netty channels, bypassing playerConnection.sendPacket.
+ * <p>
+ * This is only possible on servers which use the unshaded netty and the 1.8 packet classes. Everywhere else
+ * {@link #bind()} fails and packets keep going through {@link Util#sendPacket(Player, Object)}.
+ */
+final class PacketChannel {
+
+    private static MethodHandle getNetworkManager;
+    private static MethodHandle getChannel;
+    private static MethodHandle newSerializer;
+    private static MethodHandle getPacketId;
+    private static MethodHandle writeVarInt;
+    private static MethodHandle writePacket;
+    private static Object play;
+    private static Object clientbound;
+    private static Logger logger;
+    private static boolean failed = false;
+
+    private static final Map<UUID, Channel> channels = new ConcurrentHashMap<>();
+
+    private PacketChannel() {
+    }
+
+    /**
+     * Resolves the members needed to find player channels.
+     *
+     * @return True, if player channels can be found on this server, False otherwise.
+     */
+    static boolean bindChannels() {
+        if (getChannel != null)
+            return true;
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            Class<?> connection = Util.getCraftClass("PlayerConnection");
+            Class<?> networkManager = Util.getCraftClass("NetworkManager");
+
+            getNetworkManager = lookup.unreflectGetter(findField(connection, networkManager));
+            getChannel = lookup.unreflectGetter(findField(networkManager, Channel.class));
+        } catch (Exception | LinkageError e) {
+            getNetworkManager = null;
+            getChannel = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Resolves the members needed to serialize packets and find player channels.
+     *
+     * @param logger Logger to report a packet that cannot be serialized to.
+     * @return True, if channel writes can be used on this server, False otherwise.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static boolean bind(Logger logger) {
+        if (!bindChannels())
+            return false;
+
+        PacketChannel.logger = logger;
+
+        try {
+            Class<?> serializer = Util.getCraftClass("PacketDataSerializer");
+            Class<?> protocol = Util.getCraftClass("EnumProtocol");
+            Class<?> direction = Util.getCraftClass("EnumProtocolDirection");
+            Class<?> packet = Util.getCraftClass("Packet");
+
+            newSerializer = Util.getConstructorHandle(serializer, ByteBuf.class);
+            getPacketId = Util.getMethodHandle(protocol, "a", new Class<?>[]{direction, packet});
+            writeVarInt = Util.getMethodHandle(serializer, "b", new Class<?>[]{int.class});
+            writePacket = Util.getMethodHandle(packet, "b", new Class<?>[]{serializer});
+            play = Enum.valueOf((Class) protocol, "PLAY");
+            clientbound = Enum.valueOf((Class) direction, "CLIENTBOUND");
+        } catch (Exception | LinkageError e) {
+            return false;
+        }
+
+        return newSerializer != null && getPacketId != null && writeVarInt != null && writePacket != null;
+    }
+
+    private static Field findField(Class<?> owner, Class<?> type) throws NoSuchFieldException {
+        for (Field field : owner.getDeclaredFields()) {
+            if (type.isAssignableFrom(field.getType())) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+
+        throw new NoSuchFieldException(type.getName() + " in " + owner.getName());
+    }
+
+    /**
+     * Writes each player's packets to their channel in one task on the channel's event loop, flushing once at the end.
+     * Packets sent to several players are serialized once.
+     */
+    static void dispatch(Map<Player, List<Object>> batches) {
+        Map<Object, ByteBuf> encoded = new IdentityHashMap<>();
+
+        try {
+            for (Map.Entry<Player, List<Object>> batch : batches.entrySet()) {
+                Player p = batch.getKey();
+                List<Object> packets = batch.getValue();
+                Channel channel = getChannel(p);
+
+                if (failed || channel == null || !channel.isActive() || !write(channel, packets, encoded)) {
+                    for (Object packet : packets) {
+                        Util.sendPacket(p, packet);
+                    }
+                }
+            }
+        } finally {
+            for (ByteBuf buf : encoded.values()) {
+                buf.release();
+            }
+        }
+    }
+
+    /**
+     * @return False if a packet could not be serialized, in which case nothing was written.
+     */
+    private static boolean write(Channel channel, List<Object> packets, Map<Object, ByteBuf> encoded) {
+        List<ByteBuf> bufs = new ArrayList<>(packets.size());
+
+        for (Object packet : packets) {
+            ByteBuf buf = encoded.get(packet);
+
+            if (buf == null) {
+                buf = encode(packet);
+
+                if (buf == null) {
+                    for (ByteBuf written : bufs) {
+                        written.release();
+                    }
+                    return false;
+                }
+
+                encoded.put(packet, buf);
+            }
+
+            bufs.add(buf.duplicate().retain());
+        }
+
+        try {
+            channel.eventLoop().execute(() -> {
+                for (ByteBuf buf : bufs) {
+                    channel.write(buf);
+                }
+                channel.flush();
+            });
+        } catch (RejectedExecutionException e) {
+            // the channel is closing, so nothing will be read anymore
+            for (ByteBuf buf : bufs) {
+                buf.release();
+            }
+        }
+
+        return true;
+    }
+
+    static ByteBuf encode(Object packet) {
+        ByteBuf buf = Unpooled.buffer();
+
+        try {
+            Object serializer = newSerializer.invoke(buf);
+            writeVarInt.invoke(serializer, (int) (Integer) getPacketId.invoke(play, clientbound, packet));
+            writePacket.invoke(packet, serializer);
+            return buf;
+        } catch (Throwable e) {
+            // a packet that cannot be serialized will fail on every flush, so report it once and stop using channels
+            if (!failed) {
+                failed = true;
+                Util.setChannelWrites(false);
+                logger.log(Level.WARNING, "Could not serialize " + packet.getClass().getSimpleName() + ", sending packets normally", e);
+            }
+        }
+
+        buf.release();
+        return null;
+    }
+
+    /**
+     * Checks whether the player's channel can take more data without queueing it in memory.<br>
+     * Players whose channel can't be found, or is already closed, are treated as writable.
+     */
+    static boolean isWritable(Player p) {
+        Channel channel = getChannel(p);
+        return channel == null || !channel.isActive() || channel.isWritable();
+    }
+
+    static Channel getChannel(Player p) {
+        Channel channel = channels.get(p.getUniqueId());
+
+        // a closed channel is left over from an earlier login, so look up the current one
+        if (channel == null || !channel.isActive()) {
+            if (getChannel == null)
+                return null;
+
+            try {
+                Object connection = Util.getConnection(p);
+
+                if (connection == null)
+                    return null;
+
+                channel = (Channel) getChannel.invoke(getNetworkManager.invoke(connection));
+                channels.put(p.getUniqueId(), channel);
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        return channel;
+    }
+
+    static void invalidate(Player p) {
+        channels.remove(p.getUniqueId());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timing wheel advanced once per tick.
+ * <p>
+ * Timeouts are hashed into a fixed number of buckets by the tick they are due on, so each advance only looks at the
+ * timeouts in one bucket, however many are scheduled. Timeouts further away than one turn of the wheel wait out the
+ * remaining rounds in their bucket. This class is not thread safe and is only used from the main thread.
+ */
+final class TimingWheel {
+
+    private final List<Timeout>[] buckets;
+    private final int mask;
+    // the next tick to be processed
+    private long tick = 0;
+
+    /**
+     * @param size The number of buckets, which must be a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(int size) {
+        if (Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Size must be a power of two, but was: " + size);
+
+        this.buckets = new List[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Schedules a task to run on the given advance from now.
+     *
+     * @param task  The task to run.
+     * @param delay The number of ticks until the task runs, at least 1.
+     * @return The timeout, which can be used to cancel the task.
+     */
+    Timeout schedule(Runnable task, long delay) {
+        if (delay < 1)
+            throw new IllegalArgumentException("Delay must be at least 1, but was: " + delay);
+
+        Timeout timeout = new Timeout(task, (delay - 1) / this.buckets.length);
+        this.buckets[(int) ((this.tick + delay - 1) & this.mask)].add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Processes the current tick, running every timeout which is due.
+     */
+    void advance() {
+        int index = (int) (this.tick++ & this.mask);
+        List<Timeout> bucket = this.buckets[index];
+
+        if (bucket.isEmpty())
+            return;
+
+        // tasks may schedule into this bucket again, so swap it out while it is processed
+        this.buckets[index] = new ArrayList<>();
+
+        for (Timeout timeout : bucket) {
+            if (timeout.cancelled)
+                continue;
+
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                this.buckets[index].add(timeout);
+            } else {
+                timeout.cancelled = true;
+                timeout.task.run();
+            }
+        }
+    }
+
+    /**
+     * Cancels every scheduled timeout.
+     */
+    void clear() {
+        for (List<Timeout> bucket : this.buckets) {
+            for (Timeout timeout : bucket) {
+                timeout.cancelled = true;
+            }
+
+            bucket.clear();
+        }
+    }
+
+    static final class Timeout {
+        private final Runnable task;
+        private long rounds;
+        private boolean cancelled = false;
+
+        private Timeout(Runnable task, long rounds) {
+            this.task = task;
+            this.rounds = rounds;
+        }
+
+        void cancel() {
+            this.cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * This file is part of BarAPI, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.confuser.barapi;
+
+import org.bukkit.Server;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Decides how often bars are sent and dragons are tracked, stretching both intervals while the server is struggling.
+ * <p>
+ * The tick time is read from the server's own record of its last 100 ticks where it can be found, which includes
+ * ticks that finish in time, and is held against the tick threshold. Otherwise it falls back to the time between two
+ * calls to {@link #tick()}. That never drops below the 50ms the server waits between ticks, so only how far it runs
+ * over those 50ms is held against the separate overrun threshold. Both the tick time and the time spent flushing are
+ * smoothed, and the intervals are adjusted at most once a second: doubled while either is over its threshold, and
+ * shortened step by step once both are comfortably below. This class is only used from the main thread.
+ */
+final class UpdateRate {
+
+    // how often, in ticks, the intervals are adjusted
+    private static final int ADJUST_INTERVAL = 20;
+    // how much of a new sample goes into the smoothed times
+    private static final double SMOOTHING = 0.1;
+    // how far below the thresholds the times have to be before updates speed up again
+    private static final double RECOVERY = 0.8;
+    // how long a tick is at 20 ticks per second, in milliseconds
+    private static final double TICK_LENGTH = 50;
+
+    private final boolean enabled;
+    private final int updateInterval;
+    private final int trackerInterval;
+    private final int maxUpdateInterval;
+    private final int maxTrackerInterval;
+    private final double tickThreshold;
+    private final double overrunThreshold;
+    private final double flushThreshold;
+    // the server's recent tick durations in nanoseconds, or null if they could not be found
+    private final long[] tickTimes;
+    // smoothed, in milliseconds
+    private double tickTime = 50;
+    private double flushTime = 0;
+    private long lastTick = 0;
+    private int sinceAdjust = 0;
+    private int stretch = 1;
+
+    UpdateRate(Server server, ConfigurationSection config) {
+        this(config, config.getBoolean("adaptiveRate.enabled", true) ? findTickTimes(server) : null);
+    }
+
+    /**
+     * @param tickTimes The server's recent tick durations in nanoseconds, or null to time ticks instead.
+     */
+    UpdateRate(ConfigurationSection config, long[] tickTimes) {
+        this.updateInterval = Math.max(1, config.getInt("updateInterval", 1));
+        this.trackerInterval = Math.max(1, config.getInt("tracker.interval", 5));
+        this.enabled = config.getBoolean("adaptiveRate.enabled", true);
+        this.tickThreshold = config.getDouble("adaptiveRate.tickThreshold", 45);
+        this.overrunThreshold = config.getDouble("adaptiveRate.overrunThreshold", 5);
+        this.flushThreshold = config.getDouble("adaptiveRate.flushThreshold", 2);
+        this.maxUpdateInterval = Math.max(this.updateInterval, config.getInt("adaptiveRate.maxUpdateInterval", 10));
+        this.maxTrackerInterval = Math.max(this.trackerInterval, config.getInt("adaptiveRate.maxTrackerInterval", 20));
+        this.tickTimes = tickTimes;
+    }
+
+    /**
+     * Finds the array the server records the duration of its last 100 ticks in, or null if it can't be told apart.
+     */
+    private static long[] findTickTimes(Server server) {
+        try {
+            Method getServer = Util.getMethod(server.getClass(), "getServer", 0);
+
+            if (getServer == null)
+                return null;
+
+            Object minecraftServer = getServer.invoke(server);
+            long[] found = null;
+
+            for (Class<?> cl = minecraftServer.getClass(); cl != null; cl = cl.getSuperclass()) {
+                for (Field field : cl.getDeclaredFields()) {
+                    if (field.getType() != long[].class)
+                        continue;
+
+                    field.setAccessible(true);
+                    long[] times = (long[]) field.get(minecraftServer);
+
+                    if (times == null || times.length != 100)
+                        continue;
+
+                    // older versions keep packet statistics in arrays of the same size, which can't be told apart
+                    if (found != null)
+                        return null;
+
+                    found = times;
+                }
+            }
+
+            return found;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Called once at the start of every tick.
+     */
+    void tick() {
+        tick(System.nanoTime());
+    }
+
+    /**
+     * @param now The current {@link System#nanoTime()}.
+     */
+    void tick(long now) {
+        if (!this.enabled)
+            return;
+
+        if (this.tickTimes == null) {
+            if (this.lastTick != 0) {
+                this.tickTime += SMOOTHING * ((now - this.lastTick) / 1e6 - this.tickTime);
+            }
+
+            this.lastTick = now;
+        }
+
+        if (++this.sinceAdjust >= ADJUST_INTERVAL) {
+            this.sinceAdjust = 0;
+            adjust();
+        }
+    }
+
+    /**
+     * Records the time a flush took, in nanoseconds.
+     */
+    void flushed(long nanos) {
+        this.flushTime += SMOOTHING * (nanos / 1e6 - this.flushTime);
+    }
+
+    private void adjust() {
+        if (this.tickTimes != null) {
+            long total = 0;
+
+            for (long time : this.tickTimes) {
+                total += time;
+            }
+
+            this.tickTime = total / 1e6 / this.tickTimes.length;
+        }
+
+        // how close each time is to its threshold, where 1 is right at it
+        double tickLoad = this.tickTimes != null ? this.tickTime / this.tickThreshold : (this.tickTime - TICK_LENGTH) / this.overrunThreshold;
+        double flushLoad = this.flushTime / this.flushThreshold;
+
+        if (tickLoad > 1 || flushLoad > 1) {
+            // no point stretching further once both intervals are at their maximum
+            if (getUpdateInterval() < this.maxUpdateInterval || getTrackerInterval() < this.maxTrackerInterval) {
+                this.stretch *= 2;
+            }
+        } else if (this.stretch > 1 && tickLoad < RECOVERY && flushLoad < RECOVERY) {
+            this.stretch--;
+        }
+    }
+
+    /**
+     * Gets how often, in ticks, bars should currently be sent.
+     */
+    int getUpdateInterval() {
+        return Math.min(this.updateInterval * this.stretch, this.maxUpdateInterval);
+    }
+
+    /**
+     * Gets how often, in ticks, dragons should currently be tracked.
+     */
+    int getTrackerInterval() {
+        return Math.min(this.trackerInterval * this.stretch, this.maxTrackerInterval);
+    }
+
+    /**
+     * Gets the smoothed duration of a tick, in milliseconds.
+     */
+    double getTickTime() {
+        return this.tickTime;
+    }
+}
@@ -11,9 +11,18 @@ import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 
 /**
  * This is a utility class for BarAPI. It is based on the code by SoThatsIt.
@@ -29,19 +38,53 @@ public class Util {
     public static String version;
     public static Class<?> fakeDragonClass = v1_6.class;
     public static boolean isBelowGround = true;
+    // bound to the constructor of fakeDragonClass by detectVersion
+    private static BiFunction<String, Location, FakeDragon> dragonFactory = v1_6::new;
+
+    // members are resolved once and reused for every subsequent packet
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Map<String, Class<?>> craftClasses = new ConcurrentHashMap<>();
+    private static final Map<MemberKey, Method> methods = new ConcurrentHashMap<>();
+    private static final Map<MemberKey, MethodHandle> methodHandles = new ConcurrentHashMap<>();
+    private static final Map<MemberKey, Field> fields = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, MethodHandle> packetSenders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, MethodHandle> connectionGetters = new ConcurrentHashMap<>();
+    // set once PacketChannel has been bound, so its netty types are never loaded otherwise
+    private static boolean channelWrites = false;
+    private static boolean backpressure = false;
 
     static {
         detectVersion();
     }
 
     public static void detectVersion() {
-        if (BarAPI.useSpigotHack()) {
+        String name = Bukkit.getServer().getClass().getPackage().getName();
+        detectVersion(name.substring(name.lastIndexOf('.') + 1), BarAPI.useSpigotHack());
+    }
+
+    /**
+     * Selects the dragon implementation and NMS package for the given CraftBukkit package version, e.g. v1_8_R3.
+     *
+     * @param mcVersion  The CraftBukkit package version, ignored when using the spigot hack.
+     * @param spigotHack Whether 1.8 clients are connected to a 1.7 server through the spigot protocol hack.
+     */
+    public static void detectVersion(String mcVersion, boolean spigotHack) {
+        // bound against the classes of the previously selected version
+        packetSenders.clear();
+        connectionGetters.clear();
+
+        newProtocol = false;
+        fakeDragonClass = v1_6.class;
+        dragonFactory = v1_6::new;
+        isBelowGround = true;
+
+        if (spigotHack) {
+            newProtocol = true;
             fakeDragonClass = v1_8Fake.class;
+            dragonFactory = v1_8Fake::new;
             version = "v1_7_R4.";
             isBelowGround = false;
         } else {
-            String name = Bukkit.getServer().getClass().getPackage().getName();
-            String mcVersion = name.substring(name.lastIndexOf('.') + 1);
             String[] versions = mcVersion.split("_");
 
             if (versions[0].equals("v1")) {
@@ -50,8 +93,10 @@ public class Util {
                 if (minor == 7) {
                     newProtocol = true;
                     fakeDragonClass = v1_7.class;
+                    dragonFactory = v1_7::new;
                 } else if (minor == 8) {
                     fakeDragonClass = v1_8.class;
+                    dragonFactory = v1_8::new;
                     isBelowGround = false;
                 }
             }
@@ -61,35 +106,113 @@ public class Util {
     }
 
     public static FakeDragon newDragon(String message, Location loc) {
-        FakeDragon fakeDragon = null;
+        return dragonFactory.apply(message, loc);
+    }
 
+    // Reflection Util
+    public static void sendPacket(Player p, Object packet) {
         try {
-            fakeDragon = (FakeDragon) fakeDragonClass.getConstructor(String.class, Location.class).newInstance(message, loc);
-        } catch (IllegalArgumentException | SecurityException | IllegalAccessException | InstantiationException | NoSuchMethodException | InvocationTargetException e) {
+            MethodHandle sender = packetSenders.get(p.getClass());
+
+            if (sender == null) {
+                sender = bindPacketSender(p.getClass());
+                packetSenders.put(p.getClass(), sender);
+            }
+
+            sender.invokeExact(p, packet);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
+    }
+
+    /**
+     * Checks whether bar updates should be sent to the player now.<br>
+     * When backpressure is enabled, players whose connection has a backlog of unsent data are held back,
+     * so that their bar is sent in its latest state once the backlog is gone.
+     */
+    public static boolean isWritable(Player player) {
+        return !backpressure || PacketChannel.isWritable(player);
+    }
+
+    /**
+     * Sends each player's packets in order.<br>
+     * When channel writes are enabled each player's packets are written to their channel together and flushed once,
+     * with packets shared between players serialized only once.
+     */
+    public static void sendPackets(Map<Player, List<Object>> batches) {
+        if (channelWrites) {
+            PacketChannel.dispatch(batches);
+            return;
+        }
+
+        for (Map.Entry<Player, List<Object>> batch : batches.entrySet()) {
+            for (Object packet : batch.getValue()) {
+                sendPacket(batch.getKey(), packet);
+            }
+        }
+    }
 
-        return fakeDragon;
+    static void setBackpressure(boolean enabled) {
+        backpressure = enabled;
     }
 
-    // Reflection Util
-    public static void sendPacket(Player p, Object packet) {
+    static void setChannelWrites(boolean enabled) {
+        channelWrites = enabled;
+    }
+
+    /**
+     * Gets the NMS PlayerConnection of the given player.
+     */
+    public static Object getConnection(Player p) {
         try {
-            Object nmsPlayer = getHandle(p);
-            Field con_field = nmsPlayer.getClass().getField("playerConnection");
-            Object con = con_field.get(nmsPlayer);
-            Method packet_method = getMethod(con.getClass(), "sendPacket");
-            packet_method.invoke(con, packet);
-        } catch (SecurityException | IllegalArgumentException | InvocationTargetException | IllegalAccessException | NoSuchFieldException e) {
+            MethodHandle getter = connectionGetters.get(p.getClass());
+
+            if (getter == null) {
+                getter = bindConnectionGetter(p.getClass()).asType(MethodType.methodType(Object.class, Player.class));
+                connectionGetters.put(p.getClass(), getter);
+            }
+
+            return getter.invokeExact(p);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
+        return null;
+    }
+
+    /**
+     * Binds handle.playerConnection.sendPacket(packet) for the given CraftPlayer class into a single handle,
+     * so sending a packet does no member lookups.
+     */
+    private static MethodHandle bindPacketSender(Class<?> playerClass) throws ReflectiveOperationException {
+        MethodHandle getConnection = bindConnectionGetter(playerClass);
+        MethodHandle sendPacket = getMethodHandle(getConnection.type().returnType(), "sendPacket", 1);
+
+        return MethodHandles.filterArguments(sendPacket, 0, getConnection)
+                .asType(MethodType.methodType(void.class, Player.class, Object.class));
+    }
+
+    /**
+     * Binds handle.playerConnection for the given CraftPlayer class into a single handle.
+     */
+    private static MethodHandle bindConnectionGetter(Class<?> playerClass) throws ReflectiveOperationException {
+        Class<?> entityPlayer = getCraftClass("EntityPlayer");
+        MethodHandle getHandle = getMethodHandle(playerClass, "getHandle", new Class<?>[]{})
+                .asType(MethodType.methodType(entityPlayer, playerClass));
+        MethodHandle getConnection = lookup.unreflectGetter(entityPlayer.getField("playerConnection"));
+
+        return MethodHandles.filterReturnValue(getHandle, getConnection);
     }
 
     public static Class<?> getCraftClass(String ClassName) {
         String className = "net.minecraft.server." + version + ClassName;
-        Class<?> c = null;
+        Class<?> c = craftClasses.get(className);
+
+        if (c != null)
+            return c;
+
         try {
             c = Class.forName(className);
+            craftClasses.put(className, c);
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
@@ -97,30 +220,33 @@ public class Util {
     }
 
     public static Object getHandle(World world) {
-        Object nms_entity = null;
-        Method entity_getHandle = getMethod(world.getClass(), "getHandle");
-        try {
-            nms_entity = entity_getHandle.invoke(world);
-        } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
-        return nms_entity;
+        return getHandle((Object) world);
     }
 
     public static Object getHandle(Entity entity) {
+        return getHandle((Object) entity);
+    }
+
+    private static Object getHandle(Object craftObject) {
         Object nms_entity = null;
-        Method entity_getHandle = getMethod(entity.getClass(), "getHandle");
         try {
-            nms_entity = entity_getHandle.invoke(entity);
-        } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
+            nms_entity = getMethodHandle(craftObject.getClass(), "getHandle", new Class<?>[]{}).invoke(craftObject);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
         return nms_entity;
     }
 
     public static Field getField(Class<?> cl, String field_name) {
+        MemberKey key = new MemberKey(cl, field_name, null);
+        Field field = fields.get(key);
+
+        if (field != null)
+            return field;
+
         try {
-            Field field = cl.getDeclaredField(field_name);
+            field = cl.getDeclaredField(field_name);
+            fields.put(key, field);
             return field;
         } catch (SecurityException | NoSuchFieldException e) {
             e.printStackTrace();
@@ -129,32 +255,111 @@ public class Util {
     }
 
     public static Method getMethod(Class<?> cl, String method, Class<?>[] args) {
-        for (Method m : cl.getMethods()) {
-            if (m.getName().equals(method) && ClassListEqual(args, m.getParameterTypes())) {
-                return m;
-            }
+        return getMethod(new MemberKey(cl, method, Arrays.asList(args)));
+    }
+
+    public static Method getMethod(Class<?> cl, String method, Integer args) {
+        return getMethod(new MemberKey(cl, method, args));
+    }
+
+    public static Method getMethod(Class<?> cl, String method) {
+        return getMethod(new MemberKey(cl, method, null));
+    }
+
+    /**
+     * Gets a cached {@link MethodHandle} for the given method, resolved through {@link #getMethod(Class, String, Class[])}.
+     */
+    public static MethodHandle getMethodHandle(Class<?> cl, String method, Class<?>[] args) {
+        return unreflect(new MemberKey(cl, method, Arrays.asList(args)));
+    }
+
+    /**
+     * Gets a cached {@link MethodHandle} for the given method, resolved through {@link #getMethod(Class, String, Integer)}.
+     */
+    public static MethodHandle getMethodHandle(Class<?> cl, String method, Integer args) {
+        return unreflect(new MemberKey(cl, method, args));
+    }
+
+    /**
+     * Gets a {@link MethodHandle} for the given constructor, intended to be bound once and kept in a constant.
+     */
+    public static MethodHandle getConstructorHandle(Class<?> cl, Class<?>... args) {
+        try {
+            Constructor<?> constructor = cl.getDeclaredConstructor(args);
+            constructor.setAccessible(true);
+            return lookup.unreflectConstructor(constructor);
+        } catch (SecurityException | NoSuchMethodException | IllegalAccessException e) {
+            e.printStackTrace();
         }
         return null;
     }
 
-    public static Method getMethod(Class<?> cl, String method, Integer args) {
-        for (Method m : cl.getMethods()) {
-            if (m.getName().equals(method) && args.equals(new Integer(m.getParameterTypes().length))) {
-                return m;
-            }
+    /**
+     * Gets a {@link MethodHandle} setting the given field, resolved through {@link #getField(Class, String)}.
+     */
+    public static MethodHandle getFieldSetter(Class<?> cl, String field_name) {
+        Field field = getField(cl, field_name);
+
+        if (field == null)
+            return null;
+
+        try {
+            field.setAccessible(true);
+            return lookup.unreflectSetter(field);
+        } catch (SecurityException | IllegalAccessException e) {
+            e.printStackTrace();
         }
         return null;
     }
 
-    public static Method getMethod(Class<?> cl, String method) {
-        for (Method m : cl.getMethods()) {
-            if (m.getName().equals(method)) {
+    private static Method getMethod(MemberKey key) {
+        Method method = methods.get(key);
+
+        if (method == null) {
+            method = findMethod(key);
+
+            if (method != null)
+                methods.put(key, method);
+        }
+
+        return method;
+    }
+
+    private static Method findMethod(MemberKey key) {
+        for (Method m : key.owner.getMethods()) {
+            if (!m.getName().equals(key.name))
+                continue;
+
+            if (key.signature == null
+                    || key.signature.equals(m.getParameterCount())
+                    || key.signature instanceof List && ClassListEqual(((List<?>) key.signature).toArray(new Class<?>[0]), m.getParameterTypes())) {
                 return m;
             }
         }
         return null;
     }
 
+    private static MethodHandle unreflect(MemberKey key) {
+        MethodHandle handle = methodHandles.get(key);
+
+        if (handle == null) {
+            Method method = getMethod(key);
+
+            if (method == null)
+                return null;
+
+            try {
+                method.setAccessible(true);
+                handle = lookup.unreflect(method);
+                methodHandles.put(key, handle);
+            } catch (SecurityException | IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return handle;
+    }
+
     public static boolean ClassListEqual(Class<?>[] l1, Class<?>[] l2) {
         boolean equal = true;
 
@@ -170,4 +375,36 @@ public class Util {
         return equal;
     }
 
+    /**
+     * Identifies a member by its owning class, name and signature, the signature being either a list of parameter
+     * types, a parameter count or null to match on name alone.
+     */
+    private static final class MemberKey {
+        private final Class<?> owner;
+        private final String name;
+        private final Object signature;
+
+        private MemberKey(Class<?> owner, String name, Object signature) {
+            this.owner = owner;
+            this.name = name;
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof MemberKey))
+                return false;
+
+            MemberKey other = (MemberKey) o;
+            return this.owner == other.owner && this.name.equals(other.name) && Objects.equals(this.signature, other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.owner.hashCode() * 31 + this.name.hashCode()) * 31 + Objects.hashCode(this.signature);
+        }
+    }
+
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package me.confuser.barapi.nms;
 
-import me.confuser.barapi.Util;
 import org.bukkit.Location;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public abstract class FakeDragon {
+    // fake dragons take their IDs from the top of the range, which the server's own entity counter never reaches
+    private static final int FIRST_ENTITY_ID = 0x7F000000;
+    private static final AtomicInteger nextEntityId = new AtomicInteger(FIRST_ENTITY_ID);
+
     public float health = 0;
     public String name;
     private float maxHealth = 200;
@@ -16,7 +21,17 @@ public abstract class FakeDragon {
     private byte yvel = 0;
     private byte zvel = 0;
     private boolean visible = false;
-    private Object world;
+    private int entityId = nextEntityId();
+    // the state last sent to the client
+    private boolean spawned = false;
+    private String sentName;
+    private float sentHealth;
+    // where the player was when the dragon was last moved
+    private double anchorX;
+    private double anchorY;
+    private double anchorZ;
+    private float anchorYaw;
+    private float anchorPitch;
 
     public FakeDragon(String name, Location loc, int percent) {
         this.name = name;
@@ -24,7 +39,6 @@ public abstract class FakeDragon {
         this.y = loc.getBlockY();
         this.z = loc.getBlockZ();
         this.health = percent / 100F * maxHealth;
-        this.world = Util.getHandle(loc.getWorld());
     }
 
     public FakeDragon(String name, Location loc) {
@@ -32,7 +46,13 @@ public abstract class FakeDragon {
         this.x = loc.getBlockX();
         this.y = loc.getBlockY();
         this.z = loc.getBlockZ();
-        this.world = Util.getHandle(loc.getWorld());
+    }
+
+    /**
+     * Allocates an entity ID from the range reserved for fake dragons.
+     */
+    public static int nextEntityId() {
+        return nextEntityId.getAndUpdate(id -> id == Integer.MAX_VALUE ? FIRST_ENTITY_ID : id + 1);
     }
 
     public float getMaxHealth() {
@@ -47,6 +67,32 @@ public abstract class FakeDragon {
         this.health = percent / 100F * maxHealth;
     }
 
+    /**
+     * Gets the number of distinct widths the client can draw the bar with.<br>
+     * 1.6 to 1.8 clients draw a 182 pixel bar, so the health is rendered as one of 183 widths.
+     */
+    public int getBarSteps() {
+        return 183;
+    }
+
+    /**
+     * Rounds the health to a value which the client renders exactly like the given one, so that health changes
+     * which would not change the drawn bar are not sent.
+     *
+     * @param health The health to round.
+     * @return The rounded health.
+     */
+    public float quantize(float health) {
+        if (health <= 0 || health >= maxHealth)
+            return health;
+
+        int steps = getBarSteps();
+        int width = (int) (health / maxHealth * steps);
+
+        // the middle of the step, so the client's float maths lands on the same width
+        return Math.min((width + 0.5F) / steps * maxHealth, maxHealth);
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -123,12 +169,83 @@ public abstract class FakeDragon {
         this.visible = visible;
     }
 
-    public Object getWorld() {
-        return world;
+    /**
+     * Gets the entity ID the client knows this dragon by.
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Sets the entity ID, which may be shared with other players' dragons as every client only sees its own.<br>
+     * This must be done before the dragon is spawned.
+     */
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public boolean isSpawned() {
+        return spawned;
+    }
+
+    public boolean isNameChanged() {
+        return !spawned || !name.equals(sentName);
+    }
+
+    public boolean isHealthChanged() {
+        return !spawned || health != sentHealth;
+    }
+
+    /**
+     * Records the current name and health as the state the client has seen.
+     */
+    public void markSent() {
+        spawned = true;
+        sentName = name;
+        sentHealth = health;
+    }
+
+    /**
+     * Marks the dragon as no longer known to the client, so it is spawned again with its current state.
+     */
+    public void markDestroyed() {
+        spawned = false;
     }
 
-    public void setWorld(Object world) {
-        this.world = world;
+    public void setAnchor(Location loc) {
+        anchorX = loc.getX();
+        anchorY = loc.getY();
+        anchorZ = loc.getZ();
+        anchorYaw = loc.getYaw();
+        anchorPitch = loc.getPitch();
+    }
+
+    /**
+     * Checks whether the player has moved or turned far enough from the anchor that the dragon should follow.
+     *
+     * @param loc      The player's current location.
+     * @param distance The distance in blocks the player may move.
+     * @param angle    The angle in degrees the player may turn.
+     * @return True, if the dragon should be moved, False otherwise.
+     */
+    public boolean isMoved(Location loc, double distance, float angle) {
+        if (!isNear(loc, distance))
+            return true;
+
+        float yaw = Math.abs(((loc.getYaw() - anchorYaw) % 360 + 540) % 360 - 180);
+        return yaw >= angle || Math.abs(loc.getPitch() - anchorPitch) >= angle;
+    }
+
+    /**
+     * Checks whether the given location is closer than the given distance to where the player was when the dragon
+     * was last moved.
+     */
+    public boolean isNear(Location loc, double distance) {
+        double dx = loc.getX() - anchorX;
+        double dy = loc.getY() - anchorY;
+        double dz = loc.getZ() - anchorZ;
+
+        return dx * dx + dy * dy + dz * dz < distance * distance;
     }
 
     public abstract Object getSpawnPacket();
@@ -137,7 +254,19 @@ public abstract class FakeDragon {
 
     public abstract Object getMetaPacket(Object watcher);
 
-    public abstract Object getTeleportPacket(Location loc);
+    /**
+     * Gets a packet moving the client's dragon to this dragon's position.
+     */
+    public abstract Object getTeleportPacket();
 
     public abstract Object getWatcher();
+
+    /**
+     * Gets a watcher holding only the given fields, used to update a dragon the client has already spawned.
+     *
+     * @param name   Whether the name should be included.
+     * @param health Whether the health should be included.
+     * @return The watcher.
+     */
+    public abstract Object getUpdateWatcher(boolean name, boolean health);
 }
@@ -4,9 +4,7 @@ import me.confuser.barapi.Util;
 import org.bukkit.Location;
 import org.bukkit.entity.EntityType;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 
 /**
  * This is the FakeDragon class for BarAPI.
@@ -18,8 +16,6 @@ import java.lang.reflect.Method;
  */
 
 public class v1_6 extends FakeDragon {
-    private static final Integer EntityID = 6000;
-
     public v1_6(String name, Location loc) {
         super(name, loc);
     }
@@ -27,55 +23,28 @@ public class v1_6 extends FakeDragon {
     @SuppressWarnings("deprecation")
     @Override
     public Object getSpawnPacket() {
-        Class<?> mob_class = Util.getCraftClass("Packet24MobSpawn");
         Object mobPacket = null;
         try {
-            mobPacket = mob_class.newInstance();
-
-            Field a = Util.getField(mob_class, "a");
-            a.setAccessible(true);
-            a.set(mobPacket, EntityID);// Entity ID
-            Field b = Util.getField(mob_class, "b");
-            b.setAccessible(true);
-            b.set(mobPacket, EntityType.ENDER_DRAGON.getTypeId());// Mob type
+            mobPacket = Handles.newMobSpawn.invoke();
+
+            Handles.mobSpawnA.invoke(mobPacket, getEntityId());// Entity ID
+            Handles.mobSpawnB.invoke(mobPacket, (int) EntityType.ENDER_DRAGON.getTypeId());// Mob type
             // (ID: 64)
-            Field c = Util.getField(mob_class, "c");
-            c.setAccessible(true);
-            c.set(mobPacket, getX());// X position
-            Field d = Util.getField(mob_class, "d");
-            d.setAccessible(true);
-            d.set(mobPacket, getY());// Y position
-            Field e = Util.getField(mob_class, "e");
-            e.setAccessible(true);
-            e.set(mobPacket, getZ());// Z position
-            Field f = Util.getField(mob_class, "f");
-            f.setAccessible(true);
-            f.set(mobPacket, (byte) ((int) (getPitch() * 256.0F / 360.0F)));// Pitch
-            Field g = Util.getField(mob_class, "g");
-            g.setAccessible(true);
-            g.set(mobPacket, (byte) ((int) 0));// Head
+            Handles.mobSpawnC.invoke(mobPacket, getX());// X position
+            Handles.mobSpawnD.invoke(mobPacket, getY());// Y position
+            Handles.mobSpawnE.invoke(mobPacket, getZ());// Z position
+            Handles.mobSpawnF.invoke(mobPacket, (byte) ((int) (getPitch() * 256.0F / 360.0F)));// Pitch
+            Handles.mobSpawnG.invoke(mobPacket, (byte) ((int) 0));// Head
             // Pitch
-            Field h = Util.getField(mob_class, "h");
-            h.setAccessible(true);
-            h.set(mobPacket, (byte) ((int) (getYaw() * 256.0F / 360.0F)));// Yaw
-            Field i = Util.getField(mob_class, "i");
-            i.setAccessible(true);
-            i.set(mobPacket, getXvel());// X velocity
-            Field j = Util.getField(mob_class, "j");
-            j.setAccessible(true);
-            j.set(mobPacket, getYvel());// Y velocity
-            Field k = Util.getField(mob_class, "k");
-            k.setAccessible(true);
-            k.set(mobPacket, getZvel());// Z velocity
+            Handles.mobSpawnH.invoke(mobPacket, (byte) ((int) (getYaw() * 256.0F / 360.0F)));// Yaw
+            Handles.mobSpawnI.invoke(mobPacket, getXvel());// X velocity
+            Handles.mobSpawnJ.invoke(mobPacket, getYvel());// Y velocity
+            Handles.mobSpawnK.invoke(mobPacket, getZvel());// Z velocity
 
             Object watcher = getWatcher();
-            Field t = Util.getField(mob_class, "t");
-            t.setAccessible(true);
-            t.set(mobPacket, watcher);
-        } catch (InstantiationException e1) {
-            e1.printStackTrace();
-        } catch (IllegalAccessException e1) {
-            e1.printStackTrace();
+            Handles.mobSpawnT.invoke(mobPacket, watcher);
+        } catch (Throwable e) {
+            e.printStackTrace();
         }
 
         return mobPacket;
@@ -83,17 +52,12 @@ public class v1_6 extends FakeDragon {
 
     @Override
     public Object getDestroyPacket() {
-        Class<?> packet_class = Util.getCraftClass("Packet29DestroyEntity");
         Object packet = null;
         try {
-            packet = packet_class.newInstance();
+            packet = Handles.newDestroy.invoke();
 
-            Field a = Util.getField(packet_class, "a");
-            a.setAccessible(true);
-            a.set(packet, new int[]{EntityID});
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
+            Handles.destroyA.invoke(packet, new int[]{getEntityId()});
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -102,26 +66,13 @@ public class v1_6 extends FakeDragon {
 
     @Override
     public Object getMetaPacket(Object watcher) {
-        Class<?> packet_class = Util.getCraftClass("Packet40EntityMetadata");
         Object packet = null;
         try {
-            packet = packet_class.newInstance();
-
-            Field a = Util.getField(packet_class, "a");
-            a.setAccessible(true);
-            a.set(packet, EntityID);
+            packet = Handles.newMetadata.invoke();
 
-            Method watcher_c = Util.getMethod(watcher.getClass(), "c");
-            Field b = Util.getField(packet_class, "b");
-            b.setAccessible(true);
-            b.set(packet, watcher_c.invoke(watcher));
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
+            Handles.metadataA.invoke(packet, getEntityId());
+            Handles.metadataB.invoke(packet, Handles.watcherC.invoke(watcher));
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -129,33 +80,18 @@ public class v1_6 extends FakeDragon {
     }
 
     @Override
-    public Object getTeleportPacket(Location loc) {
-        Class<?> packet_class = Util.getCraftClass("Packet34EntityTeleport");
+    public Object getTeleportPacket() {
         Object packet = null;
         try {
-            packet = packet_class.newInstance();
-
-            Field a = Util.getField(packet_class, "a");
-            a.setAccessible(true);
-            a.set(packet, EntityID);
-            Field b = Util.getField(packet_class, "b");
-            b.setAccessible(true);
-            b.set(packet, (int) Math.floor(loc.getX() * 32.0D));
-            Field c = Util.getField(packet_class, "c");
-            c.setAccessible(true);
-            c.set(packet, (int) Math.floor(loc.getY() * 32.0D));
-            Field d = Util.getField(packet_class, "d");
-            d.setAccessible(true);
-            d.set(packet, (int) Math.floor(loc.getZ() * 32.0D));
-            Field e = Util.getField(packet_class, "e");
-            e.setAccessible(true);
-            e.set(packet, (byte) ((int) (loc.getYaw() * 256.0F / 360.0F)));
-            Field f = Util.getField(packet_class, "f");
-            f.setAccessible(true);
-            f.set(packet, (byte) ((int) (loc.getPitch() * 256.0F / 360.0F)));
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
+            packet = Handles.newTeleport.invoke();
+
+            Handles.teleportA.invoke(packet, getEntityId());
+            Handles.teleportB.invoke(packet, getX() * 32);
+            Handles.teleportC.invoke(packet, getY() * 32);
+            Handles.teleportD.invoke(packet, getZ() * 32);
+            Handles.teleportE.invoke(packet, (byte) ((int) (getYaw() * 256.0F / 360.0F)));
+            Handles.teleportF.invoke(packet, (byte) ((int) (getPitch() * 256.0F / 360.0F)));
+        } catch (Throwable e) {
             e.printStackTrace();
         }
         return packet;
@@ -163,31 +99,81 @@ public class v1_6 extends FakeDragon {
 
     @Override
     public Object getWatcher() {
-        Class<?> watcher_class = Util.getCraftClass("DataWatcher");
         Object watcher = null;
         try {
-            watcher = watcher_class.newInstance();
-
-            Method a = Util.getMethod(watcher_class, "a", new Class<?>[]{int.class, Object.class});
-            a.setAccessible(true);
-
-            a.invoke(watcher, 0, isVisible() ? (byte) 0 : (byte) 0x20);
-            a.invoke(watcher, 6, (Float) (float) health);
-            a.invoke(watcher, 7, (Integer) (int) 0);
-            a.invoke(watcher, 8, (Byte) (byte) 0);
-            a.invoke(watcher, 10, (String) name);
-            a.invoke(watcher, 11, (Byte) (byte) 1);
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (IllegalArgumentException e) {
+            watcher = Handles.newWatcher.invoke();
+
+            Handles.watcherA.invoke(watcher, 0, (Object) (isVisible() ? (byte) 0 : (byte) 0x20));
+            Handles.watcherA.invoke(watcher, 6, (Object) (Float) (float) health);
+            Handles.watcherA.invoke(watcher, 7, (Object) (Integer) (int) 0);
+            Handles.watcherA.invoke(watcher, 8, (Object) (Byte) (byte) 0);
+            Handles.watcherA.invoke(watcher, 10, (Object) (String) name);
+            Handles.watcherA.invoke(watcher, 11, (Object) (Byte) (byte) 1);
+        } catch (Throwable e) {
             e.printStackTrace();
-        } catch (InvocationTargetException e) {
+        }
+
+        return watcher;
+    }
+
+    @Override
+    public Object getUpdateWatcher(boolean name, boolean health) {
+        Object watcher = null;
+        try {
+            watcher = Handles.newWatcher.invoke();
+
+            if (health)
+                Handles.watcherA.invoke(watcher, 6, (Object) (Float) (float) this.health);
+            if (name)
+                Handles.watcherA.invoke(watcher, 10, (Object) (String) this.name);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
         return watcher;
     }
 
+    /**
+     * The packet constructors and fields used above, bound once when first needed.
+     */
+    private static final class Handles {
+        private static final Class<?> MobSpawn = Util.getCraftClass("Packet24MobSpawn");
+        private static final MethodHandle newMobSpawn = Util.getConstructorHandle(MobSpawn);
+        private static final MethodHandle mobSpawnA = Util.getFieldSetter(MobSpawn, "a");
+        private static final MethodHandle mobSpawnB = Util.getFieldSetter(MobSpawn, "b");
+        private static final MethodHandle mobSpawnC = Util.getFieldSetter(MobSpawn, "c");
+        private static final MethodHandle mobSpawnD = Util.getFieldSetter(MobSpawn, "d");
+        private static final MethodHandle mobSpawnE = Util.getFieldSetter(MobSpawn, "e");
+        private static final MethodHandle mobSpawnF = Util.getFieldSetter(MobSpawn, "f");
+        private static final MethodHandle mobSpawnG = Util.getFieldSetter(MobSpawn, "g");
+        private static final MethodHandle mobSpawnH = Util.getFieldSetter(MobSpawn, "h");
+        private static final MethodHandle mobSpawnI = Util.getFieldSetter(MobSpawn, "i");
+        private static final MethodHandle mobSpawnJ = Util.getFieldSetter(MobSpawn, "j");
+        private static final MethodHandle mobSpawnK = Util.getFieldSetter(MobSpawn, "k");
+        private static final MethodHandle mobSpawnT = Util.getFieldSetter(MobSpawn, "t");
+
+        private static final Class<?> Destroy = Util.getCraftClass("Packet29DestroyEntity");
+        private static final MethodHandle newDestroy = Util.getConstructorHandle(Destroy);
+        private static final MethodHandle destroyA = Util.getFieldSetter(Destroy, "a");
+
+        private static final Class<?> Metadata = Util.getCraftClass("Packet40EntityMetadata");
+        private static final MethodHandle newMetadata = Util.getConstructorHandle(Metadata);
+        private static final MethodHandle metadataA = Util.getFieldSetter(Metadata, "a");
+        private static final MethodHandle metadataB = Util.getFieldSetter(Metadata, "b");
+
+        private static final Class<?> Teleport = Util.getCraftClass("Packet34EntityTeleport");
+        private static final MethodHandle newTeleport = Util.getConstructorHandle(Teleport);
+        private static final MethodHandle teleportA = Util.getFieldSetter(Teleport, "a");
+        private static final MethodHandle teleportB = Util.getFieldSetter(Teleport, "b");
+        private static final MethodHandle teleportC = Util.getFieldSetter(Teleport, "c");
+        private static final MethodHandle teleportD = Util.getFieldSetter(Teleport, "d");
+        private static final MethodHandle teleportE = Util.getFieldSetter(Teleport, "e");
+        private static final MethodHandle teleportF = Util.getFieldSetter(Teleport, "f");
+
+        private static final Class<?> DataWatcher = Util.getCraftClass("DataWatcher");
+        private static final MethodHandle newWatcher = Util.getConstructorHandle(DataWatcher);
+        private static final MethodHandle watcherA = Util.getMethodHandle(DataWatcher, "a", new Class<?>[]{int.class, Object.class});
+        private static final MethodHandle watcherC = Util.getMethodHandle(DataWatcher, "c", 0);
+    }
+
 }
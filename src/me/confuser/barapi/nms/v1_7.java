@@ -2,10 +2,9 @@ package me.confuser.barapi.nms;
 
 import me.confuser.barapi.Util;
 import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 
 /**
  * This is the FakeDragon class for BarAPI.
@@ -17,60 +16,31 @@ import java.lang.reflect.Method;
  */
 
 public class v1_7 extends FakeDragon {
-    private Object dragon;
-    private int id;
-
     public v1_7(String name, Location loc) {
         super(name, loc);
     }
 
+    @SuppressWarnings("deprecation")
     @Override
     public Object getSpawnPacket() {
-        Class<?> Entity = Util.getCraftClass("Entity");
-        Class<?> EntityLiving = Util.getCraftClass("EntityLiving");
-        Class<?> EntityEnderDragon = Util.getCraftClass("EntityEnderDragon");
         Object packet = null;
         try {
-            dragon = EntityEnderDragon.getConstructor(Util.getCraftClass("World")).newInstance(getWorld());
-
-            Method setLocation = Util.getMethod(EntityEnderDragon, "setLocation", new Class<?>[]{double.class, double.class, double.class, float.class, float.class});
-            setLocation.invoke(dragon, getX(), getY(), getZ(), getPitch(), getYaw());
-
-            Method setInvisible = Util.getMethod(EntityEnderDragon, "setInvisible", new Class<?>[]{boolean.class});
-            setInvisible.invoke(dragon, isVisible());
-
-            Method setCustomName = Util.getMethod(EntityEnderDragon, "setCustomName", new Class<?>[]{String.class});
-            setCustomName.invoke(dragon, name);
-
-            Method setHealth = Util.getMethod(EntityEnderDragon, "setHealth", new Class<?>[]{float.class});
-            setHealth.invoke(dragon, health);
-
-            Field motX = Util.getField(Entity, "motX");
-            motX.set(dragon, getXvel());
-
-            Field motY = Util.getField(Entity, "motY");
-            motY.set(dragon, getYvel());
-
-            Field motZ = Util.getField(Entity, "motZ");
-            motZ.set(dragon, getZvel());
-
-            Method getId = Util.getMethod(EntityEnderDragon, "getId", new Class<?>[]{});
-            this.id = (Integer) getId.invoke(dragon);
-
-            Class<?> PacketPlayOutSpawnEntityLiving = Util.getCraftClass("PacketPlayOutSpawnEntityLiving");
-
-            packet = PacketPlayOutSpawnEntityLiving.getConstructor(new Class<?>[]{EntityLiving}).newInstance(dragon);
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
+            // filled in directly, so no NMS entity has to be created
+            packet = Handles.newSpawn.invoke();
+
+            Handles.spawnA.invoke(packet, getEntityId());
+            Handles.spawnB.invoke(packet, (int) EntityType.ENDER_DRAGON.getTypeId());
+            Handles.spawnC.invoke(packet, getX() * 32);
+            Handles.spawnD.invoke(packet, getY() * 32);
+            Handles.spawnE.invoke(packet, getZ() * 32);
+            Handles.spawnF.invoke(packet, getXvel() * 8000);
+            Handles.spawnG.invoke(packet, getYvel() * 8000);
+            Handles.spawnH.invoke(packet, getZvel() * 8000);
+            Handles.spawnI.invoke(packet, (byte) (getYaw() * 256 / 360));
+            Handles.spawnJ.invoke(packet, (byte) (getPitch() * 256 / 360));
+            Handles.spawnK.invoke(packet, (byte) (getYaw() * 256 / 360));
+            Handles.spawnL.invoke(packet, getWatcher());
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -79,23 +49,11 @@ public class v1_7 extends FakeDragon {
 
     @Override
     public Object getDestroyPacket() {
-        Class<?> PacketPlayOutEntityDestroy = Util.getCraftClass("PacketPlayOutEntityDestroy");
-
         Object packet = null;
         try {
-            packet = PacketPlayOutEntityDestroy.newInstance();
-            Field a = PacketPlayOutEntityDestroy.getDeclaredField("a");
-            a.setAccessible(true);
-            a.set(packet, new int[]{id});
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (IllegalArgumentException e) {
+            packet = Handles.newDestroy.invoke();
+            Handles.destroyA.invoke(packet, new int[]{getEntityId()});
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -104,24 +62,10 @@ public class v1_7 extends FakeDragon {
 
     @Override
     public Object getMetaPacket(Object watcher) {
-        Class<?> DataWatcher = Util.getCraftClass("DataWatcher");
-
-        Class<?> PacketPlayOutEntityMetadata = Util.getCraftClass("PacketPlayOutEntityMetadata");
-
         Object packet = null;
         try {
-            packet = PacketPlayOutEntityMetadata.getConstructor(new Class<?>[]{int.class, DataWatcher, boolean.class}).newInstance(id, watcher, true);
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
+            packet = Handles.newMetadata.invoke(getEntityId(), watcher, true);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -129,24 +73,11 @@ public class v1_7 extends FakeDragon {
     }
 
     @Override
-    public Object getTeleportPacket(Location loc) {
-        Class<?> PacketPlayOutEntityTeleport = Util.getCraftClass("PacketPlayOutEntityTeleport");
-
+    public Object getTeleportPacket() {
         Object packet = null;
-
         try {
-            packet = PacketPlayOutEntityTeleport.getConstructor(new Class<?>[]{int.class, int.class, int.class, int.class, byte.class, byte.class}).newInstance(this.id, loc.getBlockX() * 32, loc.getBlockY() * 32, loc.getBlockZ() * 32, (byte) ((int) loc.getYaw() * 256 / 360), (byte) ((int) loc.getPitch() * 256 / 360));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
+            packet = Handles.newTeleport.invoke(getEntityId(), getX() * 32, getY() * 32, getZ() * 32, (byte) (getYaw() * 256 / 360), (byte) (getPitch() * 256 / 360));
+        } catch (Throwable e) {
             e.printStackTrace();
         }
 
@@ -155,39 +86,68 @@ public class v1_7 extends FakeDragon {
 
     @Override
     public Object getWatcher() {
-        Class<?> Entity = Util.getCraftClass("Entity");
-        Class<?> DataWatcher = Util.getCraftClass("DataWatcher");
-
         Object watcher = null;
         try {
-            watcher = DataWatcher.getConstructor(new Class<?>[]{Entity}).newInstance(dragon);
-            Method a = Util.getMethod(DataWatcher, "a", new Class<?>[]{int.class, Object.class});
-
-            a.invoke(watcher, 0, isVisible() ? (byte) 0 : (byte) 0x20);
-            a.invoke(watcher, 6, (Float) health);
-            a.invoke(watcher, 7, (Integer) 0);
-            a.invoke(watcher, 8, (Byte) (byte) 0);
-            a.invoke(watcher, 10, name);
-            a.invoke(watcher, 11, (Byte) (byte) 1);
-        } catch (IllegalArgumentException e) {
-
-            e.printStackTrace();
-        } catch (SecurityException e) {
+            watcher = Handles.newWatcher.invoke((Object) null);
 
+            Handles.watcherA.invoke(watcher, 0, (Object) (isVisible() ? (byte) 0 : (byte) 0x20));
+            Handles.watcherA.invoke(watcher, 6, (Object) (Float) health);
+            Handles.watcherA.invoke(watcher, 7, (Object) (Integer) 0);
+            Handles.watcherA.invoke(watcher, 8, (Object) (Byte) (byte) 0);
+            Handles.watcherA.invoke(watcher, 10, (Object) name);
+            Handles.watcherA.invoke(watcher, 11, (Object) (Byte) (byte) 1);
+        } catch (Throwable e) {
             e.printStackTrace();
-        } catch (InstantiationException e) {
-
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
+        }
 
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
+        return watcher;
+    }
 
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
+    @Override
+    public Object getUpdateWatcher(boolean name, boolean health) {
+        Object watcher = null;
+        try {
+            watcher = Handles.newWatcher.invoke((Object) null);
 
+            if (health)
+                Handles.watcherA.invoke(watcher, 6, (Object) (Float) this.health);
+            if (name)
+                Handles.watcherA.invoke(watcher, 10, (Object) this.name);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
+
         return watcher;
     }
+
+    /**
+     * The constructors, methods and fields used above, bound once when first needed.
+     */
+    private static final class Handles {
+        private static final Class<?> PacketPlayOutSpawnEntityLiving = Util.getCraftClass("PacketPlayOutSpawnEntityLiving");
+        private static final MethodHandle newSpawn = Util.getConstructorHandle(PacketPlayOutSpawnEntityLiving);
+        private static final MethodHandle spawnA = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "a");
+        private static final MethodHandle spawnB = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "b");
+        private static final MethodHandle spawnC = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "c");
+        private static final MethodHandle spawnD = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "d");
+        private static final MethodHandle spawnE = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "e");
+        private static final MethodHandle spawnF = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "f");
+        private static final MethodHandle spawnG = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "g");
+        private static final MethodHandle spawnH = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "h");
+        private static final MethodHandle spawnI = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "i");
+        private static final MethodHandle spawnJ = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "j");
+        private static final MethodHandle spawnK = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "k");
+        private static final MethodHandle spawnL = Util.getFieldSetter(PacketPlayOutSpawnEntityLiving, "l");
+
+        private static final Class<?> PacketPlayOutEntityDestroy = Util.getCraftClass("PacketPlayOutEntityDestroy");
+        private static final MethodHandle newDestroy = Util.getConstructorHandle(PacketPlayOutEntityDestroy);
+        private static final MethodHandle destroyA = Util.getFieldSetter(PacketPlayOutEntityDestroy, "a");
+
+        private static final Class<?> DataWatcher = Util.getCraftClass("DataWatcher");
+        private static final MethodHandle newWatcher = Util.getConstructorHandle(DataWatcher, Util.getCraftClass("Entity"));
+        private static final MethodHandle watcherA = Util.getMethodHandle(DataWatcher, "a", new Class<?>[]{int.class, Object.class});
+
+        private static final MethodHandle newMetadata = Util.getConstructorHandle(Util.getCraftClass("PacketPlayOutEntityMetadata"), int.class, DataWatcher, boolean.class);
+        private static final MethodHandle newTeleport = Util.getConstructorHandle(Util.getCraftClass("PacketPlayOutEntityTeleport"), int.class, int.class, int.class, int.class, byte.class, byte.class);
+    }
 }